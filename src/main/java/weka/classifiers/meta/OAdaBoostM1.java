@@ -32,6 +32,7 @@ import weka.classifiers.RandomizableIteratedSingleClassifierEnhancer;
 import weka.classifiers.Sourcable;
 import weka.classifiers.trees.oj48.DataReplicator;
 import weka.classifiers.trees.oj48.OptimizationCrit;
+import weka.classifiers.trees.oj48.ReplicaPartition;
 import weka.core.Capabilities;
 import weka.core.Capabilities.Capability;
 import weka.core.Instance;
@@ -587,12 +588,12 @@ implements WeightedInstancesHandler, Sourcable, TechnicalInformationHandler {
 			}
 		}
 		else {
-			Instances[] replicas = DataReplicator.splitReplicas(training);
-			double oldSumOfWeights[] = new double[replicas.length];
-			double newSumOfWeights[] = new double[replicas.length];
+			ReplicaPartition replicas = new ReplicaPartition(training);
+			double oldSumOfWeights[] = new double[replicas.numReplicas()];
+			double newSumOfWeights[] = new double[replicas.numReplicas()];
 	
-			for (int k=0;k<replicas.length;++k) {
-				oldSumOfWeights[k] = replicas[k].sumOfWeights();
+			for (int k=0;k<replicas.numReplicas();++k) {
+				oldSumOfWeights[k] = replicas.sumOfWeights(k);
 			}
 			Instances projectedInstances = DataReplicator.projectInstances(training, m_SelectedAttributes[m_NumIterationsPerformed]);
 			for (int i=0;i<training.size();++i) {
@@ -606,16 +607,16 @@ implements WeightedInstancesHandler, Sourcable, TechnicalInformationHandler {
 			}
 	
 			// Renormalize weights
-			replicas = DataReplicator.splitReplicas(training);
-			for (int k=0;k<replicas.length;++k) {
-				newSumOfWeights[k] = replicas[k].sumOfWeights();
+			for (int k=0;k<replicas.numReplicas();++k) {
+				newSumOfWeights[k] = replicas.sumOfWeights(k);
 			}
-			Enumeration enu = training.enumerateInstances();
-			while (enu.hasMoreElements()) {
-				Instance instance = (Instance) enu.nextElement();
-				int replica = DataReplicator.getInstanceReplica(instance);
-				instance.setWeight(instance.weight() * oldSumOfWeights[replica] 
-						/ newSumOfWeights[replica]);
+			for (int k=0;k<replicas.numReplicas();++k) {
+				int[] indices = replicas.indices(k);
+				for (int i=0;i<indices.length;++i) {
+					Instance instance = training.get(indices[i]);
+					instance.setWeight(instance.weight() * oldSumOfWeights[k] 
+							/ newSumOfWeights[k]);
+				}
 			}
 		}
 	}
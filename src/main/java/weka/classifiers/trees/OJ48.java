@@ -21,23 +21,35 @@
 
 package weka.classifiers.trees;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.List;
 import java.util.Random;
 import java.util.Vector;
+import java.util.concurrent.ForkJoinPool;
 
 import weka.classifiers.AbstractClassifier;
 import weka.classifiers.Sourcable;
 import weka.classifiers.trees.oj48.BinC45ModelSelection;
 import weka.classifiers.trees.oj48.C45ModelSelection;
 import weka.classifiers.trees.oj48.C45PruneableClassifierTree;
+import weka.classifiers.trees.oj48.ChunkedReplicaColumns;
 import weka.classifiers.trees.oj48.ClassifierTree;
 import weka.classifiers.trees.oj48.DataReplicator;
+import weka.classifiers.trees.oj48.HeapReplicaColumns;
+import weka.classifiers.trees.oj48.MappedReplicaColumns;
 import weka.classifiers.trees.oj48.ModelSelection;
 import weka.classifiers.trees.oj48.OptimizationCrit;
 import weka.classifiers.trees.oj48.PruneableClassifierTree;
+import weka.classifiers.trees.oj48.ReplicaBins;
+import weka.classifiers.trees.oj48.ReplicaColumns;
+import weka.classifiers.trees.oj48.ReplicaEncoder;
+import weka.classifiers.trees.oj48.ReplicaPartition;
+import weka.classifiers.trees.oj48.ReplicatedInstances;
+import weka.classifiers.trees.oj48.SparseReplicaColumns;
+import weka.classifiers.trees.oj48.StreamingReplicator;
 import weka.core.AdditionalMeasureProducer;
 import weka.core.Attribute;
 import weka.core.Capabilities;
@@ -58,6 +70,7 @@ import weka.core.TechnicalInformation.Type;
 import weka.core.TechnicalInformationHandler;
 import weka.core.Utils;
 import weka.core.WeightedInstancesHandler;
+import weka.core.converters.Loader;
 
 /**
  <!-- globalinfo-start -->
@@ -138,6 +151,53 @@ import weka.core.WeightedInstancesHandler;
  *  The maximum depth of the tree, -1 for unlimited.
  *  (default -1)</pre>
  * 
+ *  <pre> -num-slots &lt;num&gt;
+ *  Number of execution slots used to replicate the data and to evaluate the splits.
+ *  (default 1 - i.e. no parallelism, 0 = number of processors)</pre>
+ * 
+ *  <pre> -column-dir &lt;directory&gt;
+ *  Keep the columns of the replicated training data in a memory-mapped
+ *  file in the given directory (default: kept in memory).</pre>
+ * 
+ *  <pre> -num-bins &lt;num&gt;
+ *  Search numeric splits from class histograms, with the numeric
+ *  attributes quantized into the given number of bins (up to 65535).
+ *  (default 0 - i.e. exact search)</pre>
+ * 
+ *  <pre> -strict-subspace
+ *  Evaluate only the K randomly picked attributes for a split.
+ *  (default: all attributes are evaluated, and the best one is used
+ *  if none of the picked ones is useful)</pre>
+ * 
+ *  <pre> -subtree-cutoff &lt;num&gt;
+ *  Build the subtrees of the nodes with at least the given number of
+ *  (replicated) instances in parallel on the execution slots. Every node
+ *  then picks its attributes with its own random number generator, so
+ *  the tree doesn't depend on the number of slots.
+ *  (default 0 - i.e. the tree is grown sequentially)</pre>
+ * 
+ *  <pre> -boundary-points
+ *  Only compute the criteria of numeric split points between values
+ *  that are not all of the same class (boundary points).
+ *  (default: all split points are evaluated)</pre>
+ * 
+ *  <pre> -level-wise
+ *  Grow the tree level by level: all the nodes of a depth are built
+ *  before the ones of the next depth, in parallel on the execution slots.
+ *  Every node picks its attributes with its own random number generator.
+ *  Can't be used with reduced-error pruning.
+ *  (default: the tree is grown depth-first)</pre>
+ * 
+ *  <pre> -sketch-cutoff &lt;num&gt;
+ *  Search the numeric splits of the nodes with at least the given number
+ *  of (replicated) instances only at the split points proposed by a
+ *  quantile sketch of the node (see -sketch-cuts).
+ *  (default 0 - i.e. exact search)</pre>
+ * 
+ *  <pre> -sketch-cuts &lt;num&gt;
+ *  Number of split points proposed by the quantile sketch of a node.
+ *  (default 255)</pre>
+ * 
  <!-- options-end -->
  *
  * @author João Costa (ei09008@fe.up.pt)
@@ -152,6 +212,10 @@ TechnicalInformationHandler, PartitionGenerator {
 	/** for serialization */
 	static final long serialVersionUID = -217733168393644444L;
 
+	/** Number of original rows replicated at a time when the training
+	    data is streamed (see buildStreamedClassifier) */
+	private static final int STREAM_BATCH_SIZE = 10000;
+
 	/** The decision tree */
 	protected ClassifierTree m_root;
 
@@ -210,6 +274,43 @@ TechnicalInformationHandler, PartitionGenerator {
 	/**The maximum depth of the tree, -1 for unlimited. */
 	protected int m_maxDepth = -1;
 
+	/** Number of execution slots (1 = no parallelism, 0 = number of processors) */
+	protected int m_numExecutionSlots = 1;
+
+	/** Directory of the memory-mapped column files (empty = kept in memory,
+	    or the temporary directory when the data is streamed) */
+	protected String m_columnDirectory = "";
+
+	/** Number of bins of the quantized numeric attributes (0 = exact search) */
+	protected int m_numBins = 0;
+
+	/** Evaluate only the randomly picked attributes for a split? */
+	protected boolean m_strictSubspace = false;
+
+	/** Minimum number of instances of a node for its subtrees to be built
+	 *  in parallel (0 = the tree is grown sequentially) */
+	protected int m_subtreeCutoff = 0;
+
+	/** Only evaluate the numeric split points at boundary points? */
+	protected boolean m_boundaryPoints = false;
+
+	/** Grow the tree level by level instead of depth-first? */
+	protected boolean m_levelWise = false;
+
+	/** Minimum number of instances of a node for its numeric splits to be
+	 *  searched at the split points of a quantile sketch (0 = exact search) */
+	protected int m_sketchCutoff = 0;
+
+	/** Number of split points proposed by the quantile sketch of a node */
+	protected int m_sketchCuts = 255;
+
+	/** Number of numeric split candidates of the last built tree */
+	protected long m_numSplitCandidates = 0;
+
+	/** Number of numeric split candidates of the last built tree
+	 *  whose criteria were not computed */
+	protected long m_numSkippedSplitCandidates = 0;
+
 	/**
 	 * Returns a string describing classifier
 	 * @return a description suitable for
@@ -285,7 +386,15 @@ TechnicalInformationHandler, PartitionGenerator {
 
 		
 		if (!DataReplicator.isDataReplicated(instances)) {
-			data=DataReplicator.replicateData(instances, m_dataRepS,null);
+			ForkJoinPool pool = createPool();
+			try {
+				data=DataReplicator.replicateData(instances, m_dataRepS,null,pool);
+			}
+			finally {
+				if (pool != null) {
+					pool.shutdown();
+				}
+			}
 		}
 		else {
 			data=instances;
@@ -298,14 +407,35 @@ TechnicalInformationHandler, PartitionGenerator {
 		
 		ModelSelection modSelection;
 		
+		if (m_levelWise && m_reducedErrorPruning) {
+			throw new Exception("Level-wise growth is not supported with reduced-error pruning!");
+		}
+		
 		Random rand = data.getRandomNumberGenerator(m_Seed);
 
 		OptimizationCrit optCrit = OptimizationCrit.create(m_optimizationCrit);
 		if (m_binarySplits) {
-			modSelection = new BinC45ModelSelection(m_minNumObj, data, m_useMDLcorrection, optCrit,m_numAtt,rand);
+			modSelection = new BinC45ModelSelection(m_minNumObj, data, m_useMDLcorrection, optCrit,m_numAtt,rand,m_strictSubspace);
 		}
 		else {
-			modSelection = new C45ModelSelection(m_minNumObj, data, m_useMDLcorrection, optCrit,m_numAtt,rand);
+			modSelection = new C45ModelSelection(m_minNumObj, data, m_useMDLcorrection, optCrit,m_numAtt,rand,m_strictSubspace);
+		}
+		ReplicaColumns columns = null;
+		if (data instanceof ReplicatedInstances) {
+			if (m_columnDirectory.length() != 0) {
+				columns = new MappedReplicaColumns((ReplicatedInstances)data,
+						new File(m_columnDirectory));
+			}
+			else if (SparseReplicaColumns.isSparse((ReplicatedInstances)data)) {
+				columns = new SparseReplicaColumns((ReplicatedInstances)data);
+			}
+			else {
+				columns = new HeapReplicaColumns((ReplicatedInstances)data);
+			}
+			modSelection.setColumns(columns);
+			if (m_numBins > 0) {
+				modSelection.setBins(new ReplicaBins(columns, data, m_numBins));
+			}
 		}
 		if (!m_reducedErrorPruning) {
 			m_root = new C45PruneableClassifierTree(modSelection, !m_unpruned, m_CF,
@@ -315,13 +445,194 @@ TechnicalInformationHandler, PartitionGenerator {
 			m_root = new PruneableClassifierTree(modSelection, !m_unpruned, m_numFolds,
 					!m_noCleanup, m_Seed);
 		}
+		try {
+			buildRoot(modSelection, rand, data, null);
+		}
+		finally {
+			if (columns != null) {
+				columns.close();
+			}
+		}
+	}
+
+	/**
+	 * Generates the classifier from a file of replicated data written by
+	 * ReplicaChunkWriter, without loading the data: the columns are read
+	 * from the mapped file (see ChunkedReplicaColumns), so only the rows
+	 * of the nodes, their weights and the quantized attributes (see
+	 * numBins) are kept in memory. If the file has a single chunk, the
+	 * tree is the same as the one built from the replicated data.
+	 * Reduced-error pruning and the exact search of numeric splits are not
+	 * supported (see checkColumnOptions).
+	 *
+	 * @param file the file of replicated data
+	 * @throws Exception if classifier can't be built successfully
+	 */
+	public void buildChunkedClassifier(File file) throws Exception {
+
+		checkColumnOptions("chunked");
+		ChunkedReplicaColumns columns = new ChunkedReplicaColumns(file);
+		try {
+			if (columns.numRows() == 0) {
+				throw new Exception("No rows in " + file + "!");
+			}
+			buildColumnClassifier(columns, columns.header(), columns.weights());
+		}
+		finally {
+			columns.close();
+		}
+	}
+
+	/**
+	 * Generates the classifier from data read by an incremental loader
+	 * (e.g. ArffLoader or CSVLoader), without loading the data: the data
+	 * is replicated while it is read (see StreamingReplicator) and written
+	 * to a memory-mapped column store in the column directory (see
+	 * MappedReplicaColumns), so only the rows of the nodes, their weights
+	 * and the quantized attributes (see numBins) are kept in memory.
+	 * Reduced-error pruning and the exact search of numeric splits are not
+	 * supported (see checkColumnOptions).
+	 *
+	 * @param loader the loader (with its source already set)
+	 * @throws Exception if classifier can't be built successfully
+	 */
+	public void buildStreamedClassifier(Loader loader) throws Exception {
+
+		checkColumnOptions("streamed");
+		MappedReplicaColumns columns;
+		StreamingReplicator replicator =
+				new StreamingReplicator(loader, m_dataRepS, STREAM_BATCH_SIZE, 2);
+		try {
+			columns = new MappedReplicaColumns(replicator, m_columnDirectory.length() != 0 ?
+					new File(m_columnDirectory) : null);
+		}
+		finally {
+			replicator.close();
+		}
+		try {
+			if (columns.numRows() == 0) {
+				throw new Exception("No rows to train on!");
+			}
+			buildColumnClassifier(columns, columns.header(), columns.weights());
+		}
+		finally {
+			columns.close();
+		}
+	}
+
+	/**
+	 * Checks that the classifier can be generated with the current options
+	 * from a column store of the FULL replicated training data, without
+	 * its instances (see buildColumnClassifier), before the data is read.
+	 * The exact search of numeric splits sorts the rows of the nodes on
+	 * the numeric attributes, which keeps an array of the size of the
+	 * replicated data per attribute in the heap, so the numeric attributes
+	 * have to be quantized (see numBins) or the splits of every node have
+	 * to be searched from a quantile sketch (a sketch cutoff of 1).
+	 *
+	 * @param source the kind of data (for the messages)
+	 * @throws Exception if reduced-error pruning or the exact search of
+	 * numeric splits is selected
+	 */
+	private void checkColumnOptions(String source) throws Exception {
+
+		if (m_reducedErrorPruning) {
+			throw new Exception("Reduced-error pruning is not supported for " + source
+					+ " data!");
+		}
+		if (m_numBins <= 0 && (m_sketchCutoff != 1 || m_sketchCuts <= 0)) {
+			throw new Exception("The exact search of numeric splits is not supported for "
+					+ source + " data, use -num-bins or -sketch-cutoff 1!");
+		}
+	}
+
+	/**
+	 * Generates the classifier from a column store of the FULL replicated
+	 * training data, without its instances.
+	 *
+	 * @param columns the column store
+	 * @param header the header of the replicated data (with class)
+	 * @param weights the weight of every row of the store
+	 * @throws Exception if classifier can't be built successfully
+	 */
+	private void buildColumnClassifier(ReplicaColumns columns, Instances header,
+			double[] weights) throws Exception {
+
+		// Attributes of the original data (with class)
+		int numAttributes = header.classIndex()+1;
+		if (m_numAtt == -1)
+			{m_numAtt = numAttributes;}
+		else if (m_numAtt == 0)
+			{m_numAtt = (int) Utils.log2(numAttributes) + 1;}
+		else if (m_numAtt > numAttributes-1)
+			{m_numAtt = numAttributes-1;}
+
+		// Same generator as Instances.getRandomNumberGenerator
+		Random rand = new Random(m_Seed);
+		int row = rand.nextInt(columns.numRows());
+		rand.setSeed(columns.instance(row, header, weights[row]).
+				toStringNoWeight().hashCode() + m_Seed);
+
+		ModelSelection modSelection;
+		OptimizationCrit optCrit = OptimizationCrit.create(m_optimizationCrit);
 		if (m_binarySplits) {
-			m_root.buildClassifier(data,m_maxDepth);
-			((BinC45ModelSelection)modSelection).cleanup();
+			modSelection = new BinC45ModelSelection(m_minNumObj, header, columns, m_useMDLcorrection, optCrit,m_numAtt,rand,m_strictSubspace);
 		}
 		else {
-			m_root.buildClassifier(data,m_maxDepth);
-			((C45ModelSelection)modSelection).cleanup();
+			modSelection = new C45ModelSelection(m_minNumObj, header, columns, m_useMDLcorrection, optCrit,m_numAtt,rand,m_strictSubspace);
+		}
+		if (m_numBins > 0) {
+			modSelection.setBins(new ReplicaBins(columns, header, m_numBins));
+		}
+		m_root = new C45PruneableClassifierTree(modSelection, !m_unpruned, m_CF,
+				m_subtreeRaising, !m_noCleanup, m_collapseTree);
+		buildRoot(modSelection, rand, null,
+				modSelection.rowPartition(header, weights));
+	}
+
+	/**
+	 * Builds the root on the execution slots, from the given training data
+	 * or, if there is none, from the given partition of the rows of the
+	 * column store of the model selection.
+	 *
+	 * @param modSelection the model selection of the root
+	 * @param rand the random number generator of the root
+	 * @param data the training data (or null)
+	 * @param partition the partition of the rows (if there is no data)
+	 * @throws Exception if the root can't be built successfully
+	 */
+	private void buildRoot(ModelSelection modSelection, Random rand, Instances data,
+			ReplicaPartition partition) throws Exception {
+
+		if (m_subtreeCutoff > 0 || m_levelWise) {
+			m_root.setRandom(rand);
+		}
+		ForkJoinPool pool = createPool();
+		modSelection.setPool(pool);
+		modSelection.setSubtreeCutoff(m_subtreeCutoff);
+		modSelection.setBoundaryPoints(m_boundaryPoints);
+		modSelection.setLevelWise(m_levelWise);
+		modSelection.setSketch(m_sketchCutoff, m_sketchCuts);
+		try {
+			if (data == null) {
+				((C45PruneableClassifierTree)m_root).buildClassifier(partition, m_maxDepth);
+			}
+			else {
+				m_root.buildClassifier(data,m_maxDepth);
+			}
+			if (m_binarySplits) {
+				((BinC45ModelSelection)modSelection).cleanup();
+			}
+			else {
+				((C45ModelSelection)modSelection).cleanup();
+			}
+			m_numSplitCandidates = modSelection.numCandidates();
+			m_numSkippedSplitCandidates = modSelection.numSkippedCandidates();
+		}
+		finally {
+			if (pool != null) {
+				pool.shutdown();
+			}
 		}
 	}
 
@@ -333,10 +644,11 @@ TechnicalInformationHandler, PartitionGenerator {
 	 * @throws Exception if instance can't be classified successfully
 	 */
 	public double classifyInstance(Instance instance) throws Exception {
-		Instances replicatedData = DataReplicator.replicateInstance(instance);
+		ReplicaEncoder encoder = ReplicaEncoder.threadEncoder();
+		int numReplicas = ReplicaEncoder.numReplicas(instance);
 		double classification = 0.0;
-		for (int i=0;i<replicatedData.numInstances();++i) {
-			double result = m_root.classifyInstance(replicatedData.get(i));
+		for (int i=0;i<numReplicas;++i) {
+			double result = m_root.classifyInstance(encoder.encode(instance, i));
 			classification+=result;
 		}
 		return classification;
@@ -353,7 +665,6 @@ TechnicalInformationHandler, PartitionGenerator {
 			throws Exception {
 
 		if (m_frankHallDistribution) {
-			Instances replicas = DataReplicator.replicateInstance(instance);
 			// P(y>Ci)
 			double [] prob = m_root.distributionForMulticlassInstance(instance, m_useLaplace);
 			// P(y=Ci)
@@ -459,6 +770,53 @@ TechnicalInformationHandler, PartitionGenerator {
 	 *  The maximum depth of the tree, -1 for unlimited.
 	 *  (default -1)
 	 * 
+	 * -num-slots num;
+	 *  Number of execution slots used to replicate the data and to evaluate the splits.
+	 *  (default 1 - i.e. no parallelism, 0 = number of processors)
+	 * 
+	 * -column-dir directory;
+	 *  Keep the columns of the replicated training data in a memory-mapped
+	 *  file in the given directory (default: kept in memory).
+	 * 
+	 * -num-bins num;
+	 *  Search numeric splits from class histograms, with the numeric
+	 *  attributes quantized into the given number of bins (up to 65535).
+	 *  (default 0 - i.e. exact search)
+	 * 
+	 * -strict-subspace
+	 *  Evaluate only the K randomly picked attributes for a split.
+	 *  (default: all attributes are evaluated, and the best one is used
+	 *  if none of the picked ones is useful)
+	 * 
+	 * -subtree-cutoff num;
+	 *  Build the subtrees of the nodes with at least the given number of
+	 *  (replicated) instances in parallel on the execution slots. Every node
+	 *  then picks its attributes with its own random number generator, so
+	 *  the tree doesn't depend on the number of slots.
+	 *  (default 0 - i.e. the tree is grown sequentially)
+	 * 
+	 * -boundary-points
+	 *  Only compute the criteria of numeric split points between values
+	 *  that are not all of the same class (boundary points).
+	 *  (default: all split points are evaluated)
+	 * 
+	 * -level-wise
+	 *  Grow the tree level by level: all the nodes of a depth are built
+	 *  before the ones of the next depth, in parallel on the execution slots.
+	 *  Every node picks its attributes with its own random number generator.
+	 *  Can't be used with reduced-error pruning.
+	 *  (default: the tree is grown depth-first)
+	 * 
+	 * -sketch-cutoff num;
+	 *  Search the numeric splits of the nodes with at least the given number
+	 *  of (replicated) instances only at the split points proposed by a
+	 *  quantile sketch of the node (see -sketch-cuts).
+	 *  (default 0 - i.e. exact search)
+	 * 
+	 * -sketch-cuts num;
+	 *  Number of split points proposed by the quantile sketch of a node.
+	 *  (default 255)
+	 * 
 	 * @return an enumeration of all the available options.
 	 */
 	public Enumeration listOptions() {
@@ -520,6 +878,53 @@ TechnicalInformationHandler, PartitionGenerator {
 		newVector.
 		addElement(new Option("\tThe maximum depth of the tree, -1 for unlimited (default -1).",
 				"depth", 1, "-depth <depth>"));
+		newVector.
+		addElement(new Option("\tNumber of execution slots used to replicate the data and to evaluate the splits.\n"
+				+ "\t(default 1 - i.e. no parallelism, 0 = number of processors)",
+				"num-slots", 1, "-num-slots <num>"));
+		newVector.
+		addElement(new Option("\tKeep the columns of the replicated training data in a memory-mapped\n"
+				+ "\tfile in the given directory (default: kept in memory).",
+				"column-dir", 1, "-column-dir <directory>"));
+		newVector.
+		addElement(new Option("\tSearch numeric splits from class histograms, with the numeric\n"
+				+ "\tattributes quantized into the given number of bins (up to 65535).\n"
+				+ "\t(default 0 - i.e. exact search)",
+				"num-bins", 1, "-num-bins <num>"));
+		newVector.
+		addElement(new Option("\tEvaluate only the K randomly picked attributes for a split.\n"
+				+ "\t(default: all attributes are evaluated, and the best one is used\n"
+				+ "\tif none of the picked ones is useful)",
+				"strict-subspace", 0, "-strict-subspace"));
+		newVector.
+		addElement(new Option("\tBuild the subtrees of the nodes with at least the given number of\n"
+				+ "\t(replicated) instances in parallel on the execution slots. Every node\n"
+				+ "\tthen picks its attributes with its own random number generator, so\n"
+				+ "\tthe tree doesn't depend on the number of slots.\n"
+				+ "\t(default 0 - i.e. the tree is grown sequentially)",
+				"subtree-cutoff", 1, "-subtree-cutoff <num>"));
+		newVector.
+		addElement(new Option("\tOnly compute the criteria of numeric split points between values\n"
+				+ "\tthat are not all of the same class (boundary points).\n"
+				+ "\t(default: all split points are evaluated)",
+				"boundary-points", 0, "-boundary-points"));
+		newVector.
+		addElement(new Option("\tGrow the tree level by level: all the nodes of a depth are built\n"
+				+ "\tbefore the ones of the next depth, in parallel on the execution slots.\n"
+				+ "\tEvery node picks its attributes with its own random number generator.\n"
+				+ "\tCan't be used with reduced-error pruning.\n"
+				+ "\t(default: the tree is grown depth-first)",
+				"level-wise", 0, "-level-wise"));
+		newVector.
+		addElement(new Option("\tSearch the numeric splits of the nodes with at least the given number\n"
+				+ "\tof (replicated) instances only at the split points proposed by a\n"
+				+ "\tquantile sketch of the node (see -sketch-cuts).\n"
+				+ "\t(default 0 - i.e. exact search)",
+				"sketch-cutoff", 1, "-sketch-cutoff <num>"));
+		newVector.
+		addElement(new Option("\tNumber of split points proposed by the quantile sketch of a node.\n"
+				+ "\t(default 255)",
+				"sketch-cuts", 1, "-sketch-cuts <num>"));
 		return newVector.elements();
 	}
 
@@ -590,6 +995,53 @@ TechnicalInformationHandler, PartitionGenerator {
 	 *  The maximum depth of the tree, -1 for unlimited.
 	 *  (default -1)</pre>
 	 *
+	 * <pre> -num-slots &lt;num&gt;
+	 *  Number of execution slots used to replicate the data and to evaluate the splits.
+	 *  (default 1 - i.e. no parallelism, 0 = number of processors)</pre>
+	 *
+	 * <pre> -column-dir &lt;directory&gt;
+	 *  Keep the columns of the replicated training data in a memory-mapped
+	 *  file in the given directory (default: kept in memory).</pre>
+	 *
+	 * <pre> -num-bins &lt;num&gt;
+	 *  Search numeric splits from class histograms, with the numeric
+	 *  attributes quantized into the given number of bins (up to 65535).
+	 *  (default 0 - i.e. exact search)</pre>
+	 *
+	 * <pre> -strict-subspace
+	 *  Evaluate only the K randomly picked attributes for a split.
+	 *  (default: all attributes are evaluated, and the best one is used
+	 *  if none of the picked ones is useful)</pre>
+	 *
+	 * <pre> -subtree-cutoff &lt;num&gt;
+	 *  Build the subtrees of the nodes with at least the given number of
+	 *  (replicated) instances in parallel on the execution slots. Every node
+	 *  then picks its attributes with its own random number generator, so
+	 *  the tree doesn't depend on the number of slots.
+	 *  (default 0 - i.e. the tree is grown sequentially)</pre>
+	 *
+	 * <pre> -boundary-points
+	 *  Only compute the criteria of numeric split points between values
+	 *  that are not all of the same class (boundary points).
+	 *  (default: all split points are evaluated)</pre>
+	 *
+	 * <pre> -level-wise
+	 *  Grow the tree level by level: all the nodes of a depth are built
+	 *  before the ones of the next depth, in parallel on the execution slots.
+	 *  Every node picks its attributes with its own random number generator.
+	 *  Can't be used with reduced-error pruning.
+	 *  (default: the tree is grown depth-first)</pre>
+	 *
+	 * <pre> -sketch-cutoff &lt;num&gt;
+	 *  Search the numeric splits of the nodes with at least the given number
+	 *  of (replicated) instances only at the split points proposed by a
+	 *  quantile sketch of the node (see -sketch-cuts).
+	 *  (default 0 - i.e. exact search)</pre>
+	 *
+	 * <pre> -sketch-cuts &lt;num&gt;
+	 *  Number of split points proposed by the quantile sketch of a node.
+	 *  (default 255)</pre>
+	 *
    <!-- options-end -->
 	 *
 	 * @param options the list of options as an array of strings
@@ -687,6 +1139,57 @@ TechnicalInformationHandler, PartitionGenerator {
 		} else {
 			m_maxDepth = 0;
 		}
+		
+		String numSlotsString = Utils.getOption("num-slots", options);
+		if (numSlotsString.length() != 0) {
+			m_numExecutionSlots = Integer.parseInt(numSlotsString);
+		} else {
+			m_numExecutionSlots = 1;
+		}
+		
+		m_columnDirectory = Utils.getOption("column-dir", options);
+		
+		String numBinsString = Utils.getOption("num-bins", options);
+		if (numBinsString.length() != 0) {
+			m_numBins = Integer.parseInt(numBinsString);
+		} else {
+			m_numBins = 0;
+		}
+		
+		m_strictSubspace = Utils.getFlag("strict-subspace", options);
+		
+		String subtreeCutoffString = Utils.getOption("subtree-cutoff", options);
+		if (subtreeCutoffString.length() != 0) {
+			m_subtreeCutoff = Integer.parseInt(subtreeCutoffString);
+		} else {
+			m_subtreeCutoff = 0;
+		}
+		
+		m_boundaryPoints = Utils.getFlag("boundary-points", options);
+		
+		m_levelWise = Utils.getFlag("level-wise", options);
+		if (m_levelWise && m_reducedErrorPruning) {
+			throw new Exception("Level-wise growth and reduced error pruning can't be selected " +
+					"simultaneously!");
+		}
+		
+		String sketchCutoffString = Utils.getOption("sketch-cutoff", options);
+		if (sketchCutoffString.length() != 0) {
+			m_sketchCutoff = Integer.parseInt(sketchCutoffString);
+		} else {
+			m_sketchCutoff = 0;
+		}
+		
+		String sketchCutsString = Utils.getOption("sketch-cuts", options);
+		if (sketchCutsString.length() != 0) {
+			m_sketchCuts = Integer.parseInt(sketchCutsString);
+			if (m_sketchCuts <= 0) {
+				throw new Exception("The number of split points of a sketch has to be " +
+						"greater than zero!");
+			}
+		} else {
+			m_sketchCuts = 255;
+		}
 	}
 
 	/**
@@ -696,7 +1199,7 @@ TechnicalInformationHandler, PartitionGenerator {
 	 */
 	public String [] getOptions() {
 
-		String [] options = new String [25];
+		String [] options = new String [40];
 		int current = 0;
 
 		if (m_noCleanup) {
@@ -749,6 +1252,42 @@ TechnicalInformationHandler, PartitionGenerator {
 		if (m_maxDepth!=-1) {
 			options[current++] = "-depth"; options[current++] = "" + m_maxDepth;
 		}
+		
+		if (m_numExecutionSlots!=1) {
+			options[current++] = "-num-slots"; options[current++] = "" + m_numExecutionSlots;
+		}
+		
+		if (m_columnDirectory.length()!=0) {
+			options[current++] = "-column-dir"; options[current++] = m_columnDirectory;
+		}
+		
+		if (m_numBins!=0) {
+			options[current++] = "-num-bins"; options[current++] = "" + m_numBins;
+		}
+		
+		if (m_strictSubspace) {
+			options[current++] = "-strict-subspace";
+		}
+		
+		if (m_subtreeCutoff!=0) {
+			options[current++] = "-subtree-cutoff"; options[current++] = "" + m_subtreeCutoff;
+		}
+		
+		if (m_boundaryPoints) {
+			options[current++] = "-boundary-points";
+		}
+		
+		if (m_levelWise) {
+			options[current++] = "-level-wise";
+		}
+		
+		if (m_sketchCutoff!=0) {
+			options[current++] = "-sketch-cutoff"; options[current++] = "" + m_sketchCutoff;
+		}
+		
+		if (m_sketchCuts!=255) {
+			options[current++] = "-sketch-cuts"; options[current++] = "" + m_sketchCuts;
+		}
 
 		while (current < options.length) {
 			options[current++] = "";
@@ -895,15 +1434,35 @@ TechnicalInformationHandler, PartitionGenerator {
 		return m_root.numLeaves();
 	}
 
+	/**
+	 * Returns the number of numeric split candidates found while building
+	 * the tree
+	 * @return the number of split candidates
+	 */
+	public double measureNumSplitCandidates() {
+		return m_numSplitCandidates;
+	}
+
+	/**
+	 * Returns the number of numeric split candidates whose criteria were
+	 * not computed while building the tree (see boundaryPoints)
+	 * @return the number of skipped split candidates
+	 */
+	public double measureNumSkippedSplitCandidates() {
+		return m_numSkippedSplitCandidates;
+	}
+
 	/**
 	 * Returns an enumeration of the additional measure names
 	 * @return an enumeration of the measure names
 	 */
 	public Enumeration enumerateMeasures() {
-		Vector newVector = new Vector(3);
+		Vector newVector = new Vector(5);
 		newVector.addElement("measureTreeSize");
 		newVector.addElement("measureNumLeaves");
 		newVector.addElement("measureNumRules");
+		newVector.addElement("measureNumSplitCandidates");
+		newVector.addElement("measureNumSkippedSplitCandidates");
 		return newVector.elements();
 	}
 
@@ -920,6 +1479,10 @@ TechnicalInformationHandler, PartitionGenerator {
 			return measureTreeSize();
 		} else if (additionalMeasureName.compareToIgnoreCase("measureNumLeaves") == 0) {
 			return measureNumLeaves();
+		} else if (additionalMeasureName.compareToIgnoreCase("measureNumSplitCandidates") == 0) {
+			return measureNumSplitCandidates();
+		} else if (additionalMeasureName.compareToIgnoreCase("measureNumSkippedSplitCandidates") == 0) {
+			return measureNumSkippedSplitCandidates();
 		} else {
 			throw new IllegalArgumentException(additionalMeasureName 
 					+ " not supported (j48)");
@@ -1335,6 +1898,288 @@ TechnicalInformationHandler, PartitionGenerator {
 
 		m_maxDepth = d;
 	}
+	
+	/**
+	 * Returns the tip text for this property
+	 * @return tip text for this property suitable for
+	 * displaying in the explorer/experimenter gui
+	 */
+	public String numExecutionSlotsTipText() {
+		return "The number of execution slots (threads) used to replicate the data and to evaluate the splits "
+				+ "(1 = no parallelism, 0 = number of processors).";
+	}
+
+	/**
+	 * Get the number of execution slots.
+	 *
+	 * @return Number of execution slots.
+	 */
+	public int getNumExecutionSlots() {
+		return m_numExecutionSlots;
+	}
+
+	/**
+	 * Set the number of execution slots.
+	 *
+	 * @param numSlots Number of execution slots.
+	 */
+	public void setNumExecutionSlots(int numSlots) {
+
+		m_numExecutionSlots = numSlots;
+	}
+
+	/**
+	 * Returns the tip text for this property
+	 * @return tip text for this property suitable for
+	 * displaying in the explorer/experimenter gui
+	 */
+	public String columnDirectoryTipText() {
+		return "Directory of a memory-mapped file that keeps the columns of the replicated "
+				+ "training data (empty = kept in memory).";
+	}
+
+	/**
+	 * Get the directory of the memory-mapped column file.
+	 *
+	 * @return Directory (empty if the columns are kept in memory).
+	 */
+	public String getColumnDirectory() {
+		return m_columnDirectory;
+	}
+
+	/**
+	 * Set the directory of the memory-mapped column file.
+	 *
+	 * @param directory Directory (empty to keep the columns in memory).
+	 */
+	public void setColumnDirectory(String directory) {
+
+		m_columnDirectory = directory;
+	}
+
+	/**
+	 * Returns the tip text for this property
+	 * @return tip text for this property suitable for
+	 * displaying in the explorer/experimenter gui
+	 */
+	public String numBinsTipText() {
+		return "Number of bins of the numeric attributes when numeric splits are searched "
+				+ "from class histograms (0 = exact search).";
+	}
+
+	/**
+	 * Get the number of bins of the quantized numeric attributes.
+	 *
+	 * @return Number of bins (0 for the exact search).
+	 */
+	public int getNumBins() {
+		return m_numBins;
+	}
+
+	/**
+	 * Set the number of bins of the quantized numeric attributes.
+	 *
+	 * @param numBins Number of bins (0 for the exact search).
+	 */
+	public void setNumBins(int numBins) {
+
+		m_numBins = numBins;
+	}
+
+	/**
+	 * Returns the tip text for this property
+	 * @return tip text for this property suitable for
+	 * displaying in the explorer/experimenter gui
+	 */
+	public String strictSubspaceTipText() {
+		return "Whether only the randomly picked attributes are evaluated for a split "
+				+ "(otherwise the best attribute is used if none of them is useful).";
+	}
+
+	/**
+	 * Get whether only the randomly picked attributes are evaluated.
+	 *
+	 * @return Value of strictSubspace.
+	 */
+	public boolean getStrictSubspace() {
+		return m_strictSubspace;
+	}
+
+	/**
+	 * Set whether only the randomly picked attributes are evaluated.
+	 *
+	 * @param strictSubspace Value to assign to strictSubspace.
+	 */
+	public void setStrictSubspace(boolean strictSubspace) {
+
+		m_strictSubspace = strictSubspace;
+	}
+
+	/**
+	 * Returns the tip text for this property
+	 * @return tip text for this property suitable for
+	 * displaying in the explorer/experimenter gui
+	 */
+	public String subtreeCutoffTipText() {
+		return "Minimum number of instances of a node for its subtrees to be built in parallel "
+				+ "on the execution slots (0 = the tree is grown sequentially).";
+	}
+
+	/**
+	 * Get the minimum number of instances of a node for its subtrees to be
+	 * built in parallel.
+	 *
+	 * @return Number of instances (0 if the tree is grown sequentially).
+	 */
+	public int getSubtreeCutoff() {
+		return m_subtreeCutoff;
+	}
+
+	/**
+	 * Set the minimum number of instances of a node for its subtrees to be
+	 * built in parallel.
+	 *
+	 * @param cutoff Number of instances (0 to grow the tree sequentially).
+	 */
+	public void setSubtreeCutoff(int cutoff) {
+
+		m_subtreeCutoff = cutoff;
+	}
+
+	/**
+	 * Returns the tip text for this property
+	 * @return tip text for this property suitable for
+	 * displaying in the explorer/experimenter gui
+	 */
+	public String boundaryPointsTipText() {
+		return "Whether only the numeric split points between values that are not all "
+				+ "of the same class (boundary points) are evaluated.";
+	}
+
+	/**
+	 * Get the value of boundaryPoints.
+	 *
+	 * @return Value of boundaryPoints.
+	 */
+	public boolean getBoundaryPoints() {
+		return m_boundaryPoints;
+	}
+
+	/**
+	 * Set the value of boundaryPoints.
+	 *
+	 * @param v  Value to assign to boundaryPoints.
+	 */
+	public void setBoundaryPoints(boolean v) {
+
+		m_boundaryPoints = v;
+	}
+
+	/**
+	 * Returns the tip text for this property
+	 * @return tip text for this property suitable for
+	 * displaying in the explorer/experimenter gui
+	 */
+	public String levelWiseTipText() {
+		return "Whether the tree is grown level by level (all the nodes of a depth before the "
+				+ "ones of the next depth) instead of depth-first (not with reduced-error pruning).";
+	}
+
+	/**
+	 * Get the value of levelWise.
+	 *
+	 * @return Value of levelWise.
+	 */
+	public boolean getLevelWise() {
+		return m_levelWise;
+	}
+
+	/**
+	 * Set the value of levelWise.
+	 *
+	 * @param v  Value to assign to levelWise.
+	 */
+	public void setLevelWise(boolean v) {
+
+		m_levelWise = v;
+	}
+
+	/**
+	 * Returns the tip text for this property
+	 * @return tip text for this property suitable for
+	 * displaying in the explorer/experimenter gui
+	 */
+	public String sketchCutoffTipText() {
+		return "Minimum number of (replicated) instances of a node for its numeric splits to be "
+				+ "searched only at the split points proposed by a quantile sketch of the node "
+				+ "(0 = exact search).";
+	}
+
+	/**
+	 * Get the minimum number of instances of a node whose numeric splits
+	 * are searched from a quantile sketch.
+	 *
+	 * @return Minimum number of instances (0 for the exact search).
+	 */
+	public int getSketchCutoff() {
+		return m_sketchCutoff;
+	}
+
+	/**
+	 * Set the minimum number of instances of a node whose numeric splits
+	 * are searched from a quantile sketch.
+	 *
+	 * @param sketchCutoff Minimum number of instances (0 for the exact search).
+	 */
+	public void setSketchCutoff(int sketchCutoff) {
+
+		m_sketchCutoff = sketchCutoff;
+	}
+
+	/**
+	 * Returns the tip text for this property
+	 * @return tip text for this property suitable for
+	 * displaying in the explorer/experimenter gui
+	 */
+	public String sketchCutsTipText() {
+		return "Number of split points proposed by the quantile sketch of a node.";
+	}
+
+	/**
+	 * Get the number of split points proposed by the quantile sketch of
+	 * a node.
+	 *
+	 * @return Number of split points.
+	 */
+	public int getSketchCuts() {
+		return m_sketchCuts;
+	}
+
+	/**
+	 * Set the number of split points proposed by the quantile sketch of
+	 * a node.
+	 *
+	 * @param sketchCuts Number of split points.
+	 */
+	public void setSketchCuts(int sketchCuts) {
+
+		m_sketchCuts = sketchCuts;
+	}
+
+	/**
+	 * Creates the pool for the execution slots.
+	 *
+	 * @return the pool, or null if there is no parallelism
+	 */
+	protected ForkJoinPool createPool() {
+		if (m_numExecutionSlots == 1) {
+			return null;
+		}
+		if (m_numExecutionSlots <= 0) {
+			return new ForkJoinPool();
+		}
+		return new ForkJoinPool(m_numExecutionSlots);
+	}
 
 	/**
 	 * Returns the revision string.
@@ -96,6 +96,10 @@ import weka.core.PartitionGenerator;
  *  <pre> -O
  *  Use ordinal tree classifier</pre>
  * 
+ *  <pre> -strict-subspace
+ *  Evaluate only the K randomly picked features for a split
+ *  (ordinal trees only)</pre>
+ * 
  * <pre> -D
  *  If set, classifier is run in debug mode and
  *  may output additional info to the console</pre>
@@ -141,6 +145,9 @@ public class ORandomForest
   
   protected boolean m_useOJ48 = true;
   protected boolean m_useMedian = true;
+  
+  /** Evaluate only the K randomly picked features for a split (ordinal trees)? */
+  protected boolean m_strictSubspace = false;
 
   /**
    * Returns a string describing classifier
@@ -382,6 +389,21 @@ public class ORandomForest
     return m_useOJ48;
   }
 
+  /**
+   * Returns the tip text for this property
+   * @return tip text for this property suitable for
+   * displaying in the explorer/experimenter gui
+   */
+  public String strictSubspaceTipText() {
+    return "Evaluate only the K randomly picked features for a split (ordinal trees only)";
+  }
+  public void setStrictSubspace(boolean strictSubspace) {
+    m_strictSubspace = strictSubspace;
+  }
+  public boolean getStrictSubspace() {
+    return m_strictSubspace;
+  }
+
   /**
    * Returns the tip text for this property
    * @return tip text for this property suitable for
@@ -463,6 +485,11 @@ public class ORandomForest
     newVector.addElement(new Option(
             "\tUse ordinal tree classifier",
             "O", 0, "-O"));
+    
+    newVector.addElement(new Option(
+            "\tEvaluate only the K randomly picked features for a split\n"
+            + "\t(ordinal trees only)",
+            "strict-subspace", 0, "-strict-subspace"));
 
 
     Enumeration enu = super.listOptions();
@@ -511,6 +538,10 @@ public class ORandomForest
     	result.add("-O");
     }
     
+    if (getStrictSubspace()) {
+    	result.add("-strict-subspace");
+    }
+    
     options = super.getOptions();
     for (i = 0; i < options.length; i++)
       result.add(options[i]);
@@ -545,6 +576,10 @@ public class ORandomForest
    *  Number of execution slots.
    *  (default 1 - i.e. no parallelism)</pre>
    * 
+   * <pre> -strict-subspace
+   *  Evaluate only the K randomly picked features for a split
+   *  (ordinal trees only)</pre>
+   * 
    * <pre> -D
    *  If set, classifier is run in debug mode and
    *  may output additional info to the console</pre>
@@ -596,6 +631,7 @@ public class ORandomForest
     
     m_useMedian = Utils.getFlag('M', options);
     m_useOJ48 = Utils.getFlag('O', options);
+    m_strictSubspace = Utils.getFlag("strict-subspace", options);
     
     super.setOptions(options);
     
@@ -634,6 +670,7 @@ public class ORandomForest
 	    m_KValue = m_numFeatures;
 	    if (m_KValue < 1) m_KValue = (int) Utils.log2(data.numAttributes())+1;
 	    rTree.setNumAtt(m_KValue);
+	    rTree.setStrictSubspace(m_strictSubspace);
 	    rTree.setMaxDepth(getMaxDepth()==0?-1:getMaxDepth());
 	
 	    // set up the bagger and build the forest
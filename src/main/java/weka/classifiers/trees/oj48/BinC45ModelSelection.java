@@ -50,6 +50,12 @@ extends ModelSelection {
 	/** The FULL training dataset. */
 	private Instances m_allData; 
 
+	/** Number of instances of the FULL training dataset. */
+	private int m_numInstances;
+
+	/** Sorted values of the numeric attributes of the FULL training dataset. */
+	private SortedValueIndex m_sortedValues;
+
 	/** The criterion to optimize */
 	private OptimizationCrit m_optimizationCrit;
 	
@@ -58,6 +64,37 @@ extends ModelSelection {
 	
 	/** Random number generator */
 	private Random m_rand;
+
+	/** Evaluate only the randomly picked attributes? */
+	private boolean m_strictSubspace;
+
+	/**
+	 * Candidate splits of a dataset whose split is being selected.
+	 */
+	private static final class Candidates {
+
+		/** The dataset */
+		Instances m_data;
+
+		/** The partition of the dataset into replicas */
+		ReplicaPartition m_partition;
+
+		/** The random number generator that picks the attributes */
+		Random m_random;
+
+		/** The model that doesn't split the dataset */
+		NoSplit m_noSplitModel;
+
+		/** Are all attributes nominal with a lot of values? */
+		boolean m_multiVal;
+
+		/** The picked attributes (null if not picked yet) */
+		boolean[] m_pickedAttributes;
+
+		/** The split of each attribute (null if the dataset is not worth
+		 *  splitting) */
+		BinC45Split[] m_models;
+	}
 	
 	/**
 	 * Initializes the split selection method with the given parameters.
@@ -77,10 +114,51 @@ extends ModelSelection {
 			int numAttributes,Random rand){
 		m_minNoObj = minNoObj;
 		m_allData = allData;
+		m_numInstances = allData.numInstances();
+		m_sortedValues = new SortedValueIndex(allData);
+		m_useMDLcorrection = useMDLcorrection;
+		m_optimizationCrit = optimizationCrit;
+		m_numAttributes = numAttributes;
+		m_rand = rand;
+	}
+
+	/**
+	 * Initializes the split selection method with the given parameters,
+	 * optionally evaluating only the randomly picked attributes (strict
+	 * random subspace). Otherwise all the attributes are evaluated and
+	 * the best one is used if none of the picked attributes is useful.
+	 *
+	 * @param strictSubspace whether to evaluate only the picked attributes
+	 */
+	public BinC45ModelSelection(int minNoObj,Instances allData,
+			boolean useMDLcorrection, OptimizationCrit optimizationCrit,
+			int numAttributes,Random rand,boolean strictSubspace){
+		this(minNoObj, allData, useMDLcorrection, optimizationCrit, numAttributes, rand);
+		m_strictSubspace = strictSubspace;
+	}
+
+	/**
+	 * Initializes the split selection method for a FULL training dataset
+	 * that is only kept in the given column store (see
+	 * ChunkedReplicaColumns). The split points are found by passes over
+	 * the columns of the store.
+	 *
+	 * @param header the header of the FULL training dataset
+	 * @param columns the column store of the FULL training dataset
+	 */
+	public BinC45ModelSelection(int minNoObj,Instances header,ReplicaColumns columns,
+			boolean useMDLcorrection, OptimizationCrit optimizationCrit,
+			int numAttributes,Random rand,boolean strictSubspace){
+		m_minNoObj = minNoObj;
+		m_allData = header;
+		m_numInstances = columns.numRows();
+		m_sortedValues = new SortedValueIndex(columns, header);
 		m_useMDLcorrection = useMDLcorrection;
 		m_optimizationCrit = optimizationCrit;
 		m_numAttributes = numAttributes;
 		m_rand = rand;
+		m_strictSubspace = strictSubspace;
+		setColumns(columns);
 	}
 
 	/**
@@ -89,6 +167,10 @@ extends ModelSelection {
 	public void cleanup() {
 
 		m_allData = null;
+		m_sortedValues = null;
+		m_columns = null;
+		m_bins = null;
+		m_pool = null;
 	}
 
 	/**
@@ -96,154 +178,267 @@ extends ModelSelection {
 	 */
 	public final ClassifierSplitModel selectModel(Instances data){
 
+		return selectModel(data, partition(data));
+	}
+
+	/**
+	 * Selects C4.5-type split for the given dataset, using an existing
+	 * partition of the data into replicas.
+	 */
+	public final ClassifierSplitModel selectModel(Instances data,
+			ReplicaPartition partition){
+
+		return selectModel(data, partition, m_rand);
+	}
+
+	/**
+	 * Selects C4.5-type split for the given dataset, using an existing
+	 * partition of the data into replicas and the given random number
+	 * generator to pick the attributes.
+	 */
+	public final ClassifierSplitModel selectModel(Instances data,
+			ReplicaPartition partition, Random random){
+
+		try{
+			Candidates candidates = candidates(data, partition, random);
+			if (candidates.m_models != null) {
+				buildModels(candidates.m_models, data, partition);
+			}
+			return choose(candidates);
+		}catch(Exception e){
+			e.printStackTrace();
+		}
+		return null;
+	}
+
+	/**
+	 * Selects C4.5-type splits for the open nodes of a level of a tree
+	 * that is grown level by level. The candidate splits of all the nodes
+	 * are built attribute by attribute (see buildLevelModels).
+	 */
+	public final ClassifierSplitModel[] selectModels(ReplicaPartition[] partitions,
+			Random[] randoms) throws Exception {
+
+		Candidates[] candidates = new Candidates[partitions.length];
+		BinC45Split[][] currentModels = new BinC45Split[partitions.length][];
+		for (int i = 0; i < partitions.length; i++) {
+			candidates[i] = candidates(partitions[i].data(), partitions[i],
+					randoms[i] == null ? m_rand : randoms[i]);
+			currentModels[i] = candidates[i].m_models;
+		}
+		buildLevelModels(currentModels, partitions);
+
+		ClassifierSplitModel[] models = new ClassifierSplitModel[partitions.length];
+		for (int i = 0; i < partitions.length; i++) {
+			models[i] = choose(candidates[i]);
+		}
+		return models;
+	}
+
+	/**
+	 * Creates the candidate splits of the given dataset, which are not
+	 * built yet (none if the dataset is not worth splitting).
+	 */
+	private Candidates candidates(Instances data, ReplicaPartition partition,
+			Random random) throws Exception {
+
+		Candidates candidates = new Candidates();
+		Distribution checkDistribution;
+		boolean multiVal = true;
+		int i;
+
+		candidates.m_data = data;
+		candidates.m_partition = partition;
+		candidates.m_random = random;
+
+		// Check if all Instances belong to one class or if not
+		// enough Instances to split.
+		boolean worthySplit = false;
+		Distribution[] checkDistributions = partition.distributions();
+		for (int x=0;x<checkDistributions.length;++x) {
+			checkDistribution = checkDistributions[x];
+			if (Utils.grOrEq(checkDistribution.total(),2*m_minNoObj) &&
+				!Utils.eq(checkDistribution.total(),
+				checkDistribution.perClass(checkDistribution.maxClass()))
+				) {
+				worthySplit=true;
+				break;
+			}
+			
+		}
+		candidates.m_noSplitModel = new NoSplit(checkDistributions);
+		if (!worthySplit) {return candidates;}
+
+		// Check if all attributes are nominal and have a 
+		// lot of values.
+		Enumeration enu = data.enumerateAttributes();
+		while (enu.hasMoreElements()) {
+			Attribute attribute = (Attribute) enu.nextElement();
+			if ((attribute.isNumeric()) ||
+					(Utils.sm((double)attribute.numValues(),
+							(0.3*(double)m_numInstances)))){
+				multiVal = false;
+				break;
+			}
+		}
+		candidates.m_multiVal = multiVal;
+		BinC45Split[] currentModel = new BinC45Split[data.numAttributes()];
+		double sumOfWeights = partition.sumOfWeights();
+		int sketchCuts = sketchCuts(partition);
+
+		// In a strict random subspace, pick the attributes first and
+		// evaluate only them (the average gain is estimated from them).
+		boolean pickedAttributes[] = null;
+		if (m_strictSubspace) {
+			pickedAttributes = pickAttributes(data.classIndex(), random);
+		}
+		candidates.m_pickedAttributes = pickedAttributes;
+
+		// Get models for each attribute (apart from class attribute
+		// and attributes not picked).
+		for (i = 0; i < data.numAttributes(); i++){
+			if (i < (data).classIndex() &&
+					(pickedAttributes == null || pickedAttributes[i])){
+				currentModel[i] = new BinC45Split(i,m_minNoObj,sumOfWeights,m_useMDLcorrection,m_optimizationCrit,m_boundaryPoints,sketchCuts);
+			}else {
+				currentModel[i] = null;
+			}
+		}
+		candidates.m_models = currentModel;
+		return candidates;
+	}
+
+	/**
+	 * Selects the best of the built candidate splits of a dataset.
+	 */
+	private ClassifierSplitModel choose(Candidates candidates) throws Exception {
+
+		Instances data = candidates.m_data;
+		ReplicaPartition partition = candidates.m_partition;
+		BinC45Split[] currentModel = candidates.m_models;
+		NoSplit noSplitModel = candidates.m_noSplitModel;
+		boolean multiVal = candidates.m_multiVal;
+		boolean pickedAttributes[] = candidates.m_pickedAttributes;
 		double minResult;
 		double minRandResult;
-		BinC45Split [] currentModel;
 		BinC45Split bestModel = null;
 		BinC45Split bestRandModel = null;
-		NoSplit noSplitModel = null;
 		double averageInfoGain = 0;
 		int validModels = 0;
-		boolean multiVal = true;
-		Distribution checkDistribution;
-		double sumOfWeights;
 		int i;
 
-		try{
+		if (currentModel == null) {
+			return noSplitModel;
+		}
 
-			// Check if all Instances belong to one class or if not
-			// enough Instances to split.
-			boolean worthySplit = false;
-			Instances[] replicatedData = DataReplicator.splitReplicas(data);
-			for (int x=0;x<replicatedData.length;++x) {
-				checkDistribution = new Distribution(replicatedData[x]);
-				if (Utils.grOrEq(checkDistribution.total(),2*m_minNoObj) &&
-					!Utils.eq(checkDistribution.total(),
-					checkDistribution.perClass(checkDistribution.maxClass()))
-					) {
-					worthySplit=true;
-					break;
-				}
-				
-			}
-			Distribution[] checkDistributions = DataReplicator.getDistributions(replicatedData);
-			noSplitModel = new NoSplit(checkDistributions);
-			if (!worthySplit) {return noSplitModel;}
-
-			// Check if all attributes are nominal and have a 
-			// lot of values.
-			Enumeration enu = data.enumerateAttributes();
-			while (enu.hasMoreElements()) {
-				Attribute attribute = (Attribute) enu.nextElement();
-				if ((attribute.isNumeric()) ||
-						(Utils.sm((double)attribute.numValues(),
-								(0.3*(double)m_allData.numInstances())))){
-					multiVal = false;
-					break;
-				}
-			}
-			currentModel = new BinC45Split[data.numAttributes()];
-			sumOfWeights = data.sumOfWeights();
-
-			// For each attribute.
-			for (i = 0; i < data.numAttributes(); i++){
-
-				// Apart from class attribute.
-				if (i < (data).classIndex()){
-
-					// Get models for current attribute.
-					currentModel[i] = new BinC45Split(i,m_minNoObj,sumOfWeights,m_useMDLcorrection,m_optimizationCrit);
-					currentModel[i].buildClassifier(data);
-
-					// Check if useful split for current attribute
-					// exists and check for enumerated attributes with 
-					// a lot of values.
-					if (currentModel[i].checkModel())
-						if ((data.attribute(i).isNumeric()) ||
-								(multiVal || Utils.sm((double)data.attribute(i).numValues(),
-										(0.3*(double)m_allData.numInstances())))){
-							averageInfoGain = averageInfoGain+currentModel[i].infoGain();
-							validModels++;
-						}
-				}else {
-					currentModel[i] = null;
-				}
-			}
+		// For each attribute.
+		for (i = 0; i < data.numAttributes(); i++){
 
-			// Check if any useful split was found.
-			if (validModels == 0) {
-				return noSplitModel;
-			}
-			averageInfoGain = averageInfoGain/(double)validModels;
-			
-			// Pick random attributes
-			minResult = 0;
-			minRandResult = 0;
-			boolean pickedAttributes[] = new boolean[data.classIndex()];
-			int attributeBag[] = new int[data.classIndex()];
-			if (m_numAttributes >= data.classIndex()) {
-				for (i=0;i<pickedAttributes.length;i++) {
-					pickedAttributes[i]=true;
-				}
-			}
-			else {
-				for (i=0;i<attributeBag.length;i++) {
-					attributeBag[i]=i;
-					pickedAttributes[i]=false;
-				}
-				for (i=attributeBag.length-1;i>=attributeBag.length-m_numAttributes;i--) {
-					int pick = m_rand.nextInt(i+1);
-					pickedAttributes[attributeBag[pick]]=true;
-					if (pick != i) {
-						attributeBag[pick] = attributeBag[i]; 
+			// Apart from attributes without a model.
+			if (currentModel[i] != null){
+
+				// Check if useful split for current attribute
+				// exists and check for enumerated attributes with 
+				// a lot of values.
+				if (currentModel[i].checkModel())
+					if ((data.attribute(i).isNumeric()) ||
+							(multiVal || Utils.sm((double)data.attribute(i).numValues(),
+									(0.3*(double)m_numInstances)))){
+						averageInfoGain = averageInfoGain+currentModel[i].infoGain();
+						validModels++;
 					}
-				}
 			}
+		}
 
-			// Find "best" attribute to split on.
-			
-			for (i=0;i<data.numAttributes();i++){
-				if ((i < data.classIndex()) &&
-						(currentModel[i].checkModel()))
-
-					// Use 1E-3 here to get a closer approximation to the original
-					// implementation.
-					if ((currentModel[i].infoGain() >= (averageInfoGain-1E-3)) &&
-							Utils.gr(currentModel[i].gainRatio(),minResult)){ 
-						bestModel = currentModel[i];
-						minResult = currentModel[i].gainRatio();
-						if (pickedAttributes[i]) {
-							bestRandModel = currentModel[i];
-							minRandResult = currentModel[i].gainRatio();
-						}
+		// Check if any useful split was found.
+		if (validModels == 0) {
+			return noSplitModel;
+		}
+		averageInfoGain = averageInfoGain/(double)validModels;
+		
+		// Pick random attributes
+		minResult = 0;
+		minRandResult = 0;
+		if (pickedAttributes == null) {
+			pickedAttributes = pickAttributes(data.classIndex(), candidates.m_random);
+		}
+
+		// Find "best" attribute to split on.
+		
+		for (i=0;i<data.numAttributes();i++){
+			if ((i < data.classIndex()) && (currentModel[i] != null) &&
+					(currentModel[i].checkModel()))
+
+				// Use 1E-3 here to get a closer approximation to the original
+				// implementation.
+				if ((currentModel[i].infoGain() >= (averageInfoGain-1E-3)) &&
+						Utils.gr(currentModel[i].gainRatio(),minResult)){ 
+					bestModel = currentModel[i];
+					minResult = currentModel[i].gainRatio();
+					if (pickedAttributes[i]) {
+						bestRandModel = currentModel[i];
+						minRandResult = currentModel[i].gainRatio();
 					}
-			}
-			
-			// If picked attributes are useful, use them
-			if (Utils.gr(minRandResult,0)) {
-				bestModel = bestRandModel;
-				minResult = minRandResult;
-			}
+				}
+		}
+		
+		// If picked attributes are useful, use them
+		if (Utils.gr(minRandResult,0)) {
+			bestModel = bestRandModel;
+			minResult = minRandResult;
+		}
 
-			// Check if useful split was found.
-			if (Utils.eq(minResult,0))
-				return noSplitModel;
+		// Check if useful split was found.
+		if (Utils.eq(minResult,0))
+			return noSplitModel;
 
-			// Add all Instances with unknown values for the corresponding
-			// attribute to the distribution for the model, so that
-			// the complete distribution is stored with the model.
-			for (i=0;i<replicatedData.length;++i) {
-				bestModel.distributions()[i].
-				addInstWithUnknown(replicatedData[i],bestModel.attIndex());
-			}
+		// Add all Instances with unknown values for the corresponding
+		// attribute to the distribution for the model, so that
+		// the complete distribution is stored with the model.
+		double[] values = partition.column(bestModel.attIndex());
+		for (i=0;i<partition.numReplicas();++i) {
+			bestModel.distributions()[i].
+			addInstWithUnknown(values,partition.labels(),partition.weights(),
+					partition.indices(i));
+		}
 
-			// Set the split point analogue to C45 if attribute numeric.
-			bestModel.setSplitPoint(m_allData);
-			return bestModel;
-		}catch(Exception e){
-			e.printStackTrace();
+		// Set the split point analogue to C45 if attribute numeric.
+		bestModel.setSplitPoint(m_allData, m_sortedValues);
+		return bestModel;
+	}
+
+	/**
+	 * Picks the given number of attributes at random (all of them if
+	 * there are not more than the number of attributes to use).
+	 *
+	 * @param numAttributes the number of attributes (apart from the class)
+	 * @param random the random number generator
+	 * @return whether each attribute was picked
+	 */
+	private boolean[] pickAttributes(int numAttributes, Random random) {
+
+		boolean pickedAttributes[] = new boolean[numAttributes];
+		int attributeBag[] = new int[numAttributes];
+		int i;
+		if (m_numAttributes >= numAttributes) {
+			for (i=0;i<pickedAttributes.length;i++) {
+				pickedAttributes[i]=true;
+			}
 		}
-		return null;
+		else {
+			for (i=0;i<attributeBag.length;i++) {
+				attributeBag[i]=i;
+				pickedAttributes[i]=false;
+			}
+			for (i=attributeBag.length-1;i>=attributeBag.length-m_numAttributes;i--) {
+				int pick = random.nextInt(i+1);
+				pickedAttributes[attributeBag[pick]]=true;
+				if (pick != i) {
+					attributeBag[pick] = attributeBag[i]; 
+				}
+			}
+		}
+		return pickedAttributes;
 	}
 
 	/**
@@ -0,0 +1,933 @@
+package weka.classifiers.trees.oj48;
+
+import java.util.Arrays;
+import java.util.Enumeration;
+
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.Utils;
+
+/**
+ * Abstract class for C4.5-like splits on an attribute (see C45Split and
+ * BinC45Split), which only differ on enumerated attributes. The split
+ * points of numeric attributes are searched here for all the replicas
+ * of a node at once, with all values as candidates, or between the bins
+ * of a quantized attribute or of a quantile sketch of the node.
+ *
+ * @author João Costa (ei09008@fe.up.pt)
+ * @version $Revision: 1 $
+ */
+public abstract class C45BasedSplit
+extends ClassifierSplitModel {
+
+	/** for serialization */
+	private static final long serialVersionUID = 2519434829618036527L;
+
+	/** Attribute to split on. */
+	protected int m_attIndex;        
+
+	/** Minimum number of objects in a split.   */ 
+	protected int m_minNoObj;         
+
+	/** Use MDL correction? */
+	protected boolean m_useMDLcorrection;         
+
+	/** Value of split point. */
+	protected double[] m_splitPoint;
+
+	/** InfoGain of split. */
+	protected double[] m_infoGain; 
+
+	/** GainRatio of split.  */
+	protected double[] m_gainRatio;
+
+	/** The sum of the weights of the instances. */
+	protected double m_sumOfWeights;
+	
+	/** The criterion to optimize */
+	protected OptimizationCrit m_optimizationCrit;
+
+	/** Only evaluate the numeric split candidates at boundary points? */
+	protected boolean m_boundaryPoints;
+
+	/** Number of numeric split points proposed by a quantile sketch of
+	    the node (0 = all split points are evaluated). */
+	protected int m_sketchCuts;
+
+	/** Is the attribute to split on nominal? */
+	protected boolean m_isNominal;
+
+	/** Static reference to splitting criterion. */
+	protected static InfoGainSplitCrit m_infoGainCrit = new InfoGainSplitCrit();
+
+	/** Static reference to splitting criterion. */
+	protected static GainRatioSplitCrit m_gainRatioCrit = new GainRatioSplitCrit();
+
+	/**
+	 * Initializes the split model.
+	 */
+	public C45BasedSplit(int attIndex,int minNoObj,double sumOfWeights,
+			boolean useMDLcorrection, OptimizationCrit optimizationCrit) {
+
+		// Get index of attribute to split on.
+		m_attIndex = attIndex;
+
+		// Set minimum number of objects.
+		m_minNoObj = minNoObj;
+
+		// Set sum of weights;
+		m_sumOfWeights = sumOfWeights;
+
+		// Whether to use the MDL correction for numeric attributes
+		m_useMDLcorrection = useMDLcorrection;
+		
+		m_optimizationCrit = optimizationCrit;
+	}
+
+	/**
+	 * Initializes the split model, optionally evaluating the numeric split
+	 * candidates only at boundary points (see handleNumericAttributeSimple).
+	 */
+	public C45BasedSplit(int attIndex,int minNoObj,double sumOfWeights,
+			boolean useMDLcorrection, OptimizationCrit optimizationCrit,
+			boolean boundaryPoints) {
+
+		this(attIndex, minNoObj, sumOfWeights, useMDLcorrection, optimizationCrit);
+		m_boundaryPoints = boundaryPoints;
+	}
+
+	/**
+	 * Initializes the split model, optionally searching the numeric splits
+	 * only at the given number of split points, proposed by a quantile
+	 * sketch of the node (see ReplicaPartition.sketchLimits).
+	 */
+	public C45BasedSplit(int attIndex,int minNoObj,double sumOfWeights,
+			boolean useMDLcorrection, OptimizationCrit optimizationCrit,
+			boolean boundaryPoints, int sketchCuts) {
+
+		this(attIndex, minNoObj, sumOfWeights, useMDLcorrection, optimizationCrit,
+				boundaryPoints);
+		m_sketchCuts = sketchCuts;
+	}
+
+	/**
+	 * Creates a C4.5-type split on the given data.
+	 *
+	 * @exception Exception if something goes wrong
+	 */
+	public void buildClassifier(Instances trainInstances)
+			throws Exception {
+
+		buildClassifier(trainInstances, new ReplicaPartition(trainInstances));
+	}
+
+	/**
+	 * Creates a C4.5-type split on the given data, using an existing
+	 * partition of the data into replicas.
+	 *
+	 * @exception Exception if something goes wrong
+	 */
+	public void buildClassifier(Instances trainInstances, ReplicaPartition partition)
+			throws Exception {
+
+		int numReplicas = partition.numReplicas();
+		// Initialize the remaining instance variables.
+		m_numSubsets = 0;
+		m_splitPoint = new double[numReplicas];
+		m_activeSplit = new boolean[numReplicas];
+		m_infoGain = new double[numReplicas];
+		m_gainRatio = new double[numReplicas];
+		m_replicaDistribution = new Distribution[numReplicas];
+		m_numCandidates = 0;
+		m_numSkippedCandidates = 0;
+		for (int i=0;i<numReplicas;++i) {
+			m_splitPoint[i] = Double.MAX_VALUE;
+			m_infoGain[i] = 0;
+			m_gainRatio[i] = 0;
+		}
+
+		// Different treatment for enumerated and numeric
+		// attributes.
+		m_isNominal = trainInstances.attribute(m_attIndex).isNominal();
+		if (m_isNominal){
+			handleEnumeratedAttribute(trainInstances, partition);
+		}else{
+			handleNumericAttribute(trainInstances, partition);
+		}
+	}    
+
+	/**
+	 * Returns index of attribute for which split was generated.
+	 */
+	public final int attIndex(){
+
+		return m_attIndex;
+	}
+
+	/**
+	 * Returns the split point (numeric attribute only).
+	 * 
+	 * @return the split point used for a test on a numeric attribute
+	 */
+	public double[] splitPoint() {
+		return m_splitPoint;
+	}
+
+	/**
+	 * Returns (C4.5-type) gain ratio for the generated split.
+	 */
+	public final double gainRatio(){
+		return m_optimizationCrit.combine(m_gainRatio,m_activeSplit);
+	}
+
+	/**
+	 * Creates split on enumerated attribute.
+	 *
+	 * @exception Exception if something goes wrong
+	 */
+	protected abstract void handleEnumeratedAttribute(Instances trainInstances,
+			ReplicaPartition partition) throws Exception;
+
+	/**
+	 * Creates split on numeric attribute.
+	 *
+	 * @exception Exception if something goes wrong
+	 */
+
+	private void handleNumericAttribute(Instances trainInstances,
+			ReplicaPartition partition) throws Exception {
+		if (partition.isQuantized(m_attIndex)) {
+			handleQuantizedAttribute(trainInstances, partition,
+					partition.histogram(m_attIndex), partition.limits(m_attIndex));
+			return;
+		}
+		if (m_sketchCuts > 0) {
+			double[] values = partition.column(m_attIndex);
+			double[] limits = partition.sketchLimits(values, m_sketchCuts);
+			handleQuantizedAttribute(trainInstances, partition,
+					partition.histogram(values, limits), limits);
+			return;
+		}
+		Distribution[] dists = partition.distributions();
+		double[] values = partition.column(m_attIndex);
+		int[] sorted = partition.sortedIndices(m_attIndex, values);
+		boolean[] replicas = new boolean[partition.numReplicas()];
+		
+		// Handle Attributes
+		Arrays.fill(replicas, true);
+		handleNumericAttributeSimple(trainInstances,partition,values,sorted,replicas);
+
+
+		for (int i=0;i<replicas.length;++i) {
+			if (m_splitPoint[i]>=Double.MAX_VALUE &&
+				dists[i].total() > 10 &&
+				dists[i].prob(0)-dists[i].prob(1)<=0.2 &&
+				dists[i].prob(0)-dists[i].prob(1)>=-0.2
+			)
+			{
+				fixXOR(trainInstances,partition,values,sorted,i);
+			}
+		}
+	}
+
+	/**
+	 * Creates split on numeric attribute for the given replicas.
+	 *
+	 * All replicas share the values of the attribute, so the instances
+	 * of the node are swept once in sorted order, and each instance
+	 * updates the distribution and the best split of its own replica.
+	 * The split of each replica is the same as if its instances were
+	 * swept on their own.
+	 *
+	 * With boundary points, the criteria of a candidate are only computed
+	 * if the values on both sides of it are not all of the same class, as
+	 * the best split by information gain is never inside a run of the
+	 * same class (Fayyad and Irani, 1992). The first and the last
+	 * candidates with enough instances in each subset are also computed,
+	 * as they can cut such a run. All candidates are still counted for
+	 * the MDL correction.
+	 *
+	 * @exception Exception if something goes wrong
+	 */
+	private void handleNumericAttributeSimple(Instances trainInstances,
+			ReplicaPartition partition, double[] values, int[] sorted,
+			boolean[] replicas) throws Exception {
+
+		int numReplicas = replicas.length;
+		int[] firstMiss = new int[numReplicas];
+		int[] next = new int[numReplicas];
+		int[] index = new int[numReplicas];
+		int[] splitIndex = new int[numReplicas];
+		double[] splitValue = new double[numReplicas]; // First value above the split
+		double[] defaultEnt = new double[numReplicas];
+		double[] minSplit = new double[numReplicas];
+		boolean[] missing = new boolean[numReplicas];
+		boolean[] search = new boolean[numReplicas];
+		boolean[] found = new boolean[numReplicas];
+		int[] previous = new int[numReplicas];
+		int[] firstToShift = new int[numReplicas];
+		int[] lastToShift = new int[numReplicas];
+		int[] nextToShift = new int[sorted.length];
+		int[] groupStart = new int[numReplicas];
+		int[] groupClass = null;
+		SplitCandidates[] candidates = new SplitCandidates[numReplicas];
+		double[] gains = new double[Math.max(1, Math.min(SplitCandidates.CAPACITY, sorted.length))];
+		int[] replicaOf = partition.replicaOf();
+		int[] labels = partition.labels();
+		double[] weights = partition.weights();
+		int i, r;
+
+		// Current attribute is a numeric attribute.
+		for (r=0;r<numReplicas;++r) {
+			if (replicas[r]) {
+				m_activeSplit[r] = false;
+				m_replicaDistribution[r] = new Distribution(2,trainInstances.numClasses());
+			}
+		}
+
+		// Only Instances with known values are relevant.
+		for (i=0;i<sorted.length;++i) {
+			r = replicaOf[sorted[i]];
+			if (!replicas[r] || missing[r]) {
+				continue;
+			}
+			if (Utils.isMissingValue(values[sorted[i]])) {
+				missing[r] = true;
+				continue;
+			}
+			m_replicaDistribution[r].add(1,labels[sorted[i]],weights[sorted[i]]);
+			firstMiss[r]++;
+		}
+
+		for (r=0;r<numReplicas;++r) {
+			if (!replicas[r]) {
+				continue;
+			}
+
+			// Compute minimum number of Instances required in each
+			// subset.
+			minSplit[r] =  0.1*(m_replicaDistribution[r].total())/
+					((double)trainInstances.numClasses());
+			if (Utils.smOrEq(minSplit[r],m_minNoObj)) 
+				minSplit[r] = m_minNoObj;
+			else
+				if (Utils.gr(minSplit[r],25)) 
+					minSplit[r] = 25;
+
+			// Enough Instances with known values?
+			if (Utils.sm((double)firstMiss[r],2*minSplit[r]))
+				continue;
+
+			search[r] = true;
+			candidates[r] = new SplitCandidates(firstMiss[r]);
+			defaultEnt[r] = m_infoGainCrit.oldEnt(m_replicaDistribution[r]);
+			splitIndex[r] = -1;
+			firstToShift[r] = -1;
+		}
+
+		// Find the class of each group of values (-1 if mixed), kept
+		// at the first instance of the group.
+		if (m_boundaryPoints) {
+			groupClass = new int[sorted.length];
+			for (i=0;i<sorted.length;++i) {
+				r = replicaOf[sorted[i]];
+				if (!search[r] || next[r] >= firstMiss[r]) {
+					continue;
+				}
+				if (next[r] == 0 || values[previous[r]]+1e-5 < values[sorted[i]]) {
+					groupStart[r] = i;
+					groupClass[i] = labels[sorted[i]];
+				}
+				else if (groupClass[groupStart[r]] != labels[sorted[i]]) {
+					groupClass[groupStart[r]] = -1;
+				}
+				previous[r] = sorted[i];
+				next[r]++;
+			}
+			Arrays.fill(next, 0);
+		}
+
+		// Compute values of criteria for all possible split
+		// indices.
+		for (i=0;i<sorted.length;++i) {
+			r = replicaOf[sorted[i]];
+			if (!search[r] || next[r] >= firstMiss[r]) {
+				continue;
+			}
+			if (next[r] == 0) {
+				groupStart[r] = i;
+			}
+			else if (values[previous[r]]+1e-5 < values[sorted[i]]){ 
+				boolean boundary = groupClass == null ||
+						groupClass[groupStart[r]] < 0 ||
+						groupClass[groupStart[r]] != groupClass[i];
+				groupStart[r] = i;
+
+				// Move class values for all Instances up to next 
+				// possible split point.
+				for (int j=firstToShift[r];j>=0;j=nextToShift[j]) {
+					m_replicaDistribution[r].shift(1,0,labels[sorted[j]],weights[sorted[j]]);
+				}
+				firstToShift[r] = -1;
+
+				// Check if enough Instances in each subset and keep
+				// the split, whose criteria are computed in blocks.
+				if (Utils.grOrEq(m_replicaDistribution[r].perBag(0),minSplit[r]) && 
+					Utils.grOrEq(m_replicaDistribution[r].perBag(1),minSplit[r]) &&
+					Utils.gr(m_replicaDistribution[r].perClass(0),0) &&
+					Utils.gr(m_replicaDistribution[r].perClass(1),0)){
+					if (boundary || index[r] == 0) {
+						candidates[r].clearPending();
+						candidates[r].add(m_replicaDistribution[r],next[r]-1,values[sorted[i]]);
+						if (candidates[r].isFull()) {
+							selectSplit(candidates[r],r,defaultEnt[r],gains,splitIndex,splitValue);
+						}
+					}
+					else {
+
+						// Kept aside in case it is the last one.
+						candidates[r].setPending(m_replicaDistribution[r],next[r]-1,values[sorted[i]]);
+						m_numSkippedCandidates++;
+					}
+					index[r]++;
+					m_numCandidates++;
+				}
+				else if (candidates[r].hasPending()) {
+					addPending(candidates[r],r,defaultEnt[r],gains,splitIndex,splitValue);
+				}
+			}
+
+			// Instance is shifted at the next possible split point.
+			nextToShift[i] = -1;
+			if (firstToShift[r] < 0) {
+				firstToShift[r] = i;
+			}
+			else {
+				nextToShift[lastToShift[r]] = i;
+			}
+			lastToShift[r] = i;
+			previous[r] = sorted[i];
+			next[r]++;
+		}
+
+		for (r=0;r<numReplicas;++r) {
+			if (!search[r]) {
+				continue;
+			}
+			if (candidates[r].hasPending()) {
+				addPending(candidates[r],r,defaultEnt[r],gains,splitIndex,splitValue);
+			}
+			selectSplit(candidates[r],r,defaultEnt[r],gains,splitIndex,splitValue);
+
+			// Was there any useful split?
+			if (index[r] == 0) {
+				continue;
+			}
+
+			// Compute modified information gain for best split.
+			if (m_useMDLcorrection) {
+				m_infoGain[r] = m_infoGain[r]-(Utils.log2(index[r])/m_sumOfWeights);
+			}
+			if (Utils.smOrEq(m_infoGain[r],0)) {
+				continue;
+			}
+
+			// Set instance variables' values to values for
+			// best split.
+			m_activeSplit[r] = true;
+			found[r] = true;
+			m_numSubsets = 2;
+			m_replicaDistribution[r] = new Distribution(2,trainInstances.numClasses());
+		}
+
+		// Restore distribution for best split.
+		Arrays.fill(next, 0);
+		for (i=0;i<sorted.length;++i) {
+			r = replicaOf[sorted[i]];
+			if (found[r] && next[r] <= splitIndex[r]) {
+				m_replicaDistribution[r].add(0,labels[sorted[i]],weights[sorted[i]]);
+				if (next[r] == splitIndex[r]) {
+					m_splitPoint[r] = (splitValue[r]+values[sorted[i]])/2;
+
+					// In case we have a numerical precision problem we need to choose the
+					// smaller value
+					if (m_splitPoint[r] == splitValue[r]) {
+						m_splitPoint[r] = values[sorted[i]];
+					}
+				}
+				next[r]++;
+			}
+		}
+		Arrays.fill(next, 0);
+		for (i=0;i<sorted.length;++i) {
+			r = replicaOf[sorted[i]];
+			if (found[r] && next[r] < firstMiss[r]) {
+				if (next[r] > splitIndex[r]) {
+					m_replicaDistribution[r].add(1,labels[sorted[i]],weights[sorted[i]]);
+				}
+				next[r]++;
+			}
+		}
+
+		for (r=0;r<numReplicas;++r) {
+			if (found[r]) {
+
+				// Compute modified gain ratio for best split.
+				m_gainRatio[r] = m_gainRatioCrit.
+						splitCritValue(m_replicaDistribution[r],m_sumOfWeights,
+								m_infoGain[r]);
+			}
+		}
+	}
+	
+	/**
+	 * Computes the criteria of a block of candidate splits of a replica,
+	 * and keeps the first best one.
+	 */
+	private void selectSplit(SplitCandidates candidates, int replica,
+			double defaultEnt, double[] gains, int[] splitIndex, double[] splitValue) {
+
+		m_infoGainCrit.splitCritValues(candidates,m_sumOfWeights,defaultEnt,gains);
+		for (int k=0;k<candidates.size();++k) {
+			if (Utils.gr(gains[k],m_infoGain[replica])){
+				m_infoGain[replica] = gains[k];
+				splitIndex[replica] = candidates.splitIndex(k);
+				splitValue[replica] = candidates.splitValue(k);
+			}
+		}
+		candidates.clear();
+	}
+
+	/**
+	 * Adds the candidate split kept aside for a replica (see
+	 * handleNumericAttributeSimple), computing the criteria of the block
+	 * if it is full.
+	 */
+	private void addPending(SplitCandidates candidates, int replica,
+			double defaultEnt, double[] gains, int[] splitIndex, double[] splitValue) {
+
+		candidates.addPending();
+		m_numSkippedCandidates--;
+		if (candidates.isFull()) {
+			selectSplit(candidates,replica,defaultEnt,gains,splitIndex,splitValue);
+		}
+	}
+	
+	/**
+	 * Creates split on a quantized numeric attribute (see ReplicaBins, or
+	 * the split points of a quantile sketch of the node), from the class
+	 * histogram of every replica. Split points are only searched between
+	 * bins.
+	 *
+	 * @param histogram the class histogram of every replica
+	 * @param limits the split point between each bin and the next one
+	 * @exception Exception if something goes wrong
+	 */
+	private void handleQuantizedAttribute(Instances trainInstances,
+			ReplicaPartition partition, ReplicaHistogram histogram,
+			double[] limits) throws Exception {
+
+		int numBins = histogram.numBins();
+		int numClasses = trainInstances.numClasses();
+		int firstMiss;
+		int index;
+		int splitBin;
+		int last;
+		double currentInfoGain;
+		double defaultEnt;
+		double minSplit;
+		int bin, j;
+
+		for (int replica=0;replica<partition.numReplicas();++replica) {
+			m_activeSplit[replica] = false;
+
+			// Only Instances with known values are relevant.
+			m_replicaDistribution[replica] = new Distribution(2,numClasses);
+			for (bin=0;bin<numBins;++bin) {
+				if (histogram.count(replica,bin) > 0) {
+					for (j=0;j<numClasses;++j) {
+						m_replicaDistribution[replica].add(1,j,histogram.weight(replica,bin,j));
+					}
+				}
+			}
+			firstMiss = histogram.numKnown(replica);
+
+			// Compute minimum number of Instances required in each
+			// subset.
+			minSplit =  0.1*(m_replicaDistribution[replica].total())/
+					((double)numClasses);
+			if (Utils.smOrEq(minSplit,m_minNoObj)) 
+				minSplit = m_minNoObj;
+			else
+				if (Utils.gr(minSplit,25)) 
+					minSplit = 25;
+
+			// Enough Instances with known values?
+			if (Utils.sm((double)firstMiss,2*minSplit))
+				continue;
+
+			// Compute values of criteria for all possible split
+			// points between non-empty bins.
+			defaultEnt = m_infoGainCrit.oldEnt(m_replicaDistribution[replica]);
+			index = 0;
+			splitBin = -1;
+			last = -1;
+			for (bin=0;bin<numBins;++bin) {
+				if (histogram.count(replica,bin) == 0) {
+					continue;
+				}
+				if (last >= 0) {
+
+					// Move class values of the previous bin.
+					for (j=0;j<numClasses;++j) {
+						m_replicaDistribution[replica].shift(1,0,j,histogram.weight(replica,last,j));
+					}
+
+					// Check if enough Instances in each subset and compute
+					// values for criteria.
+					if (Utils.grOrEq(m_replicaDistribution[replica].perBag(0),minSplit) && 
+						Utils.grOrEq(m_replicaDistribution[replica].perBag(1),minSplit) &&
+						Utils.gr(m_replicaDistribution[replica].perClass(0),0) &&
+						Utils.gr(m_replicaDistribution[replica].perClass(1),0)){
+						currentInfoGain = m_infoGainCrit.
+								splitCritValue(m_replicaDistribution[replica],m_sumOfWeights,
+										defaultEnt);
+						if (Utils.gr(currentInfoGain,m_infoGain[replica])){
+							m_infoGain[replica] = currentInfoGain;
+							splitBin = last;
+						}
+						index++;
+					}
+				}
+				last = bin;
+			}
+
+			// Was there any useful split?
+			if (index == 0) {
+				continue;
+			}
+
+			// Compute modified information gain for best split.
+			if (m_useMDLcorrection) {
+				m_infoGain[replica] = m_infoGain[replica]-(Utils.log2(index)/m_sumOfWeights);
+			}
+			if (Utils.smOrEq(m_infoGain[replica],0)) {
+				continue;
+			}
+
+			// Set instance variables' values to values for
+			// best split.
+			m_activeSplit[replica] = true;
+			m_numSubsets = 2;
+			m_splitPoint[replica] = limits[splitBin];
+
+			// Restore distribution for best split.
+			m_replicaDistribution[replica] = new Distribution(2,numClasses);
+			for (bin=0;bin<numBins;++bin) {
+				if (histogram.count(replica,bin) > 0) {
+					for (j=0;j<numClasses;++j) {
+						m_replicaDistribution[replica].add(bin<=splitBin?0:1,j,
+								histogram.weight(replica,bin,j));
+					}
+				}
+			}
+
+			// Compute modified gain ratio for best split.
+			m_gainRatio[replica] = m_gainRatioCrit.
+					splitCritValue(m_replicaDistribution[replica],m_sumOfWeights,
+							m_infoGain[replica]);
+		}
+	}
+
+  /**
+   * Function to be called if a possible XOR is detected.
+   * (See '4.3.1 The XOR Problem' in 'Ensemble Methods for Ordinal Data Classification')
+   *
+   * This function is currently commented out, as it is hard to tell if this solution
+   * is general enough.
+   */
+	private void fixXOR(Instances trainInstances, ReplicaPartition partition,
+			double[] values, int[] sorted, int replica)
+			throws Exception  {
+				/*m_infoGainCrit = new ModifiedInfoGainSplitCrit();
+				m_gainRatioCrit = new ModifiedGainRatioSplitCrit();
+				if (trainInstances.attribute(m_attIndex).isNumeric()){
+					boolean[] replicas = new boolean[m_activeSplit.length];
+					replicas[replica] = true;
+					handleNumericAttributeSimple(trainInstances,partition,values,sorted,replicas);
+				}
+				m_infoGainCrit = new InfoGainSplitCrit();
+				m_gainRatioCrit = new GainRatioSplitCrit();*/
+			}
+
+	/**
+	 * Returns (C4.5-type) information gain for the generated split.
+	 */
+	public final double infoGain(){
+		return m_optimizationCrit.combine(m_infoGain,m_activeSplit);
+	}
+
+	/**
+	 * Prints left side of condition.
+	 * 
+	 * @param data the data to get the attribute name from.
+	 * @return the attribute name
+	 */
+	public final String leftSide(Instances data){
+
+		return data.attribute(m_attIndex).name();
+	}
+
+	/**
+	 * Prints the condition satisfied by instances in a subset.
+	 *
+	 * @param index of subset and training set.
+	 */
+	public final String rightSide(int index,Instances data){
+		
+		StringBuffer splitPoint = new StringBuffer();
+
+		StringBuffer text;
+
+		text = new StringBuffer();
+		if (data.attribute(m_attIndex).isNominal()){
+			text.append(nominalSide(index, data));
+		}
+		else {
+			for(int i=0;i<m_splitPoint.length;++i) {
+				splitPoint.append(
+					(m_splitPoint[i]==Double.MAX_VALUE?
+						"INF":
+						m_splitPoint[i])
+						+" "
+					);
+			}
+			if (index == 0)
+				text.append(" <= ["+splitPoint+"]");
+			else
+				text.append(" > ["+splitPoint+"]");
+		}
+		return text.toString();
+	}
+
+	/**
+	 * Prints the condition on the enumerated attribute satisfied by
+	 * instances in a subset.
+	 *
+	 * @param index of subset and training set.
+	 */
+	protected abstract String nominalSide(int index,Instances data);
+
+	/**
+	 * Sets split point to greatest value in given data smaller or equal to
+	 * old split point.
+	 * (C4.5 does this for some strange reason).
+	 */
+	public final void setSplitPoint(Instances allInstances){
+
+		setSplitPoint(allInstances, null);
+	}
+
+	/**
+	 * Sets split point to greatest value in given data smaller or equal to
+	 * old split point, found in the sorted values of the data if possible.
+	 * The split points of all the replicas are found together, so the data
+	 * (or a column store that is not in the heap) is read at most once.
+	 *
+	 * @param allInstances the data
+	 * @param index the sorted values of the data (can be null)
+	 */
+	public final void setSplitPoint(Instances allInstances, SortedValueIndex index){
+		if (allInstances.attribute(m_attIndex).isNominal() || m_numSubsets <= 1) {
+			return;
+		}
+		int numReplicas = DataReplicator.getNumReplicas(allInstances);
+		int[] replicas = new int[numReplicas];
+		int numSplits = 0;
+		for (int i=0;i<numReplicas;++i) {
+			if (m_splitPoint[i]<Double.MAX_VALUE) { // No split
+				replicas[numSplits++] = i;
+			}
+		}
+		double[] splitPoints = new double[numSplits];
+		for (int k=0;k<numSplits;++k) {
+			splitPoints[k] = m_splitPoint[replicas[k]];
+		}
+
+		double[] newSplitPoints = new double[numSplits];
+		Arrays.fill(newSplitPoints, Double.NaN);
+		if (index != null && index.isIndexed(m_attIndex)) {
+			newSplitPoints = index.largestValues(m_attIndex, splitPoints);
+		}
+
+		// Split points that depend on the order of the instances
+		int numUnknown = 0;
+		for (int k=0;k<numSplits;++k) {
+			if (Double.isNaN(newSplitPoints[k])) {
+				splitPoints[numUnknown++] = splitPoints[k];
+			}
+		}
+		double[] found = largestValues(allInstances, Arrays.copyOf(splitPoints, numUnknown));
+		for (int k=0, u=0;k<numSplits;++k) {
+			m_splitPoint[replicas[k]] = Double.isNaN(newSplitPoints[k]) ?
+					found[u++] : newSplitPoints[k];
+		}
+	}
+
+	/**
+	 * Returns the first greatest value in given data smaller or equal to
+	 * each of the given split points, in one pass over the data.
+	 */
+	private double[] largestValues(Instances allInstances, double[] splitPoints){
+		double[] newSplitPoints = new double[splitPoints.length];
+		Arrays.fill(newSplitPoints, -Double.MAX_VALUE);
+		if (splitPoints.length == 0) {
+			return newSplitPoints;
+		}
+		double tempValue;
+		Instance instance;
+
+		Enumeration enu = allInstances.enumerateInstances();
+		while (enu.hasMoreElements()) {
+			instance = (Instance) enu.nextElement();
+			if (!instance.isMissing(m_attIndex)){
+				tempValue = instance.value(m_attIndex);
+				for (int k = 0; k < splitPoints.length; k++) {
+					if (Utils.gr(tempValue,newSplitPoints[k]) && 
+							Utils.smOrEq(tempValue,splitPoints[k]))
+						newSplitPoints[k] = tempValue;
+				}
+			}
+		}
+		return newSplitPoints;
+	}
+
+
+	/**
+	 * Sets distribution associated with model.
+	 */
+	public void resetDistribution(Instances data) throws Exception {
+
+		Distribution newD = new Distribution(m_numSubsets, data.numClasses());
+		for (int i = 0; i < data.numInstances(); i++) {
+			Instance instance = data.instance(i);
+			int subset = whichSubset(instance);
+			if (subset > -1) {
+				newD.add(subset, instance);
+			}
+		}
+		newD.addInstWithUnknown(data, m_attIndex);
+		m_distribution = newD;
+	}
+
+	/**
+	 * Sets distribution associated with model, from the given partition
+	 * of the rows of a column store.
+	 */
+	public void resetDistribution(ReplicaPartition partition) throws Exception {
+
+		Distribution newD = new Distribution(m_numSubsets, partition.data().numClasses());
+		double[] values = partition.column(m_attIndex);
+		int[] replicaOf = partition.replicaOf();
+		int[] labels = partition.labels();
+		double[] weights = partition.weights();
+		int[] indices = new int[values.length];
+		for (int i = 0; i < values.length; i++) {
+			int subset = whichSubset(replicaOf[i], values[i]);
+			if (subset > -1) {
+				newD.add(subset, labels[i], weights[i]);
+			}
+			indices[i] = i;
+		}
+		newD.addInstWithUnknown(values, labels, weights, indices);
+		m_distribution = newD;
+	}
+
+	/**
+	 * Returns weights if instance is assigned to more than one subset.
+	 * Returns null if instance is only assigned to one subset.
+	 */
+	public final double [] weights(Instance instance){
+
+		double [] weights;
+		int i;
+
+		int replica = DataReplicator.getInstanceReplica(instance);
+		
+		if (instance.isMissing(m_attIndex)){
+			weights = new double [m_numSubsets];
+			for (i=0;i<m_numSubsets;i++)
+				weights [i] = m_replicaDistribution[replica].perBag(i)/m_replicaDistribution[replica].total();
+			return weights;
+		}else{
+			return null;
+		}
+	}
+
+	/**
+	 * Returns weights if instances of the given replica with the given
+	 * value are assigned to more than one subset.
+	 * Returns null if they are only assigned to one subset.
+	 */
+	public final double [] weights(int replica, double value){
+
+		double [] weights;
+		int i;
+
+		if (Utils.isMissingValue(value)){
+			weights = new double [m_numSubsets];
+			for (i=0;i<m_numSubsets;i++)
+				weights [i] = m_replicaDistribution[replica].perBag(i)/m_replicaDistribution[replica].total();
+			return weights;
+		}else{
+			return null;
+		}
+	}
+
+	/**
+	 * Returns index of subset instances of the given replica with the
+	 * given value are assigned to.
+	 * Returns -1 if they are assigned to more than one subset.
+	 */
+	public final int whichSubset(int replica, double value) {
+		if (Utils.isMissingValue(value))
+			return -1;
+		else{
+			if (m_isNominal){
+				return nominalSubset((int)value);
+			}else
+				if (Utils.smOrEq(value,m_splitPoint[replica]))
+					return 0;
+				else
+					return 1;
+		}
+	}
+
+	/**
+	 * Returns index of subset instances with the given value of the
+	 * enumerated attribute are assigned to.
+	 */
+	protected abstract int nominalSubset(int value);
+
+	/**
+	 * Returns index of subset instance is assigned to.
+	 * Returns -1 if instance is assigned to more than one subset.
+	 *
+	 * @exception Exception if something goes wrong
+	 */
+
+	public final int whichSubset(Instance instance) throws Exception {
+		int replica = DataReplicator.getInstanceReplica(instance);
+		if (instance.isMissing(m_attIndex))
+			return -1;
+		else{
+			if (instance.attribute(m_attIndex).isNominal()){
+				return nominalSubset((int)instance.value(m_attIndex));
+			}else
+				if (Utils.smOrEq(instance.value(m_attIndex),m_splitPoint[replica]))
+					return 0;
+				else
+					return 1;
+		}
+	}
+}
@@ -21,6 +21,8 @@
 
 package weka.classifiers.trees.oj48;
 
+import java.util.Random;
+
 import weka.core.Capabilities;
 import weka.core.Capabilities.Capability;
 import weka.core.Instances;
@@ -123,7 +125,14 @@ extends ClassifierTree {
 		data = new Instances(data);
 		data.deleteWithMissingClass();
 
-		buildTree(data, m_subtreeRaising || !m_cleanup, depth);
+		// The nodes only keep the rows of their training instances,
+		// unless the instances are kept after the tree is built.
+		if (m_cleanup) {
+			buildTree(data, m_toSelectModel.rowPartition(data), m_subtreeRaising, depth);
+		}
+		else {
+			buildTree(data, true, depth);
+		}
 		if (m_collapseTheTree) {
 			collapse();
 		}
@@ -135,6 +144,30 @@ extends ClassifierTree {
 		}
 	}
 
+	/**
+	 * Method for building a pruneable classifier tree from the rows of a
+	 * column store, without the training instances (see
+	 * ChunkedReplicaColumns).
+	 *
+	 * @param partition the partition of the rows (see
+	 * ModelSelection.rowPartition)
+	 * @throws Exception if something goes wrong
+	 */
+	public void buildClassifier(ReplicaPartition partition, int depth) throws Exception {
+
+		Instances header = partition.data();
+		buildTree(header, partition, m_subtreeRaising || !m_cleanup, depth);
+		if (m_collapseTheTree) {
+			collapse();
+		}
+		if (m_pruneTheTree) {
+			prune();
+		}
+		if (m_cleanup) {
+			cleanup(new Instances(header, 0));
+		}
+	}
+
 	/**
 	 * Collapses a tree to a node if training error doesn't increase.
 	 */
@@ -200,9 +233,12 @@ extends ClassifierTree {
 				}
 			}
 			
-			if (m_subtreeRaising) {
+			if (m_subtreeRaising && m_trainRows != null) {
 				errorsLargestBranch = son(indexOfLargestBranch).
-						getEstimatedErrorsForBranch((Instances)m_train);
+						getEstimatedErrorsForBranch(m_toSelectModel.partition(m_trainRows.sortedCopy()));
+			} else if (m_subtreeRaising) {
+				errorsLargestBranch = son(indexOfLargestBranch).
+						getEstimatedErrorsForBranch(m_train);
 			} else {
 				errorsLargestBranch = Double.MAX_VALUE;
 			}
@@ -230,29 +266,43 @@ extends ClassifierTree {
 				m_sons = largestBranch.m_sons;
 				m_localModel = largestBranch.localModel();
 				m_isLeaf = largestBranch.m_isLeaf;
-				newDistribution(m_train);
+				if (m_trainRows != null) {
+					newDistribution(m_trainRows);
+				}
+				else {
+					newDistribution(m_train);
+				}
 				prune();
 			}
 		}
 	}
 
 	/**
-	 * Returns a newly created tree.
+	 * Returns a newly created tree for a son of the node.
 	 *
-	 * @param data the data to work with
+	 * @param random the random number generator of the tree (can be null)
 	 * @return the new tree
 	 * @throws Exception if something goes wrong
 	 */
-	protected ClassifierTree getNewTree(Instances data, int depth) throws Exception {
+	protected ClassifierTree newSon(Random random) throws Exception {
 
 		C45PruneableClassifierTree newTree = 
 				new C45PruneableClassifierTree(m_toSelectModel, m_pruneTheTree, m_CF,
 						m_subtreeRaising, m_cleanup, m_collapseTheTree);
-		newTree.buildTree((Instances)data, m_subtreeRaising || !m_cleanup, depth-1);
+		newTree.setRandom(random);
 
 		return newTree;
 	}
 
+	/**
+	 * Returns true if the sons of the node keep their training data,
+	 * i.e. for subtree raising or if they are not cleaned up.
+	 */
+	protected boolean keepSonData() {
+
+		return m_subtreeRaising || !m_cleanup;
+	}
+
 	/**
 	 * Computes estimated errors for tree.
 	 * 
@@ -291,9 +341,9 @@ extends ClassifierTree {
 
 		// TODO check for bias
 		if (m_isLeaf) {
-			Instances[] replicas = DataReplicator.splitReplicas(data);
-			for (i=0;i<replicas.length;++i) {
-				errors+=getEstimatedErrorsForDistribution(new Distribution(replicas[i]));
+			ReplicaPartition partition = new ReplicaPartition(data);
+			for (i=0;i<partition.numReplicas();++i) {
+				errors+=getEstimatedErrorsForDistribution(partition.distribution(i));
 			}
 			return errors;
 		}
@@ -309,6 +359,41 @@ extends ClassifierTree {
 		}
 	}
 
+	/**
+	 * Computes estimated errors for one branch, from a partition of the
+	 * rows of a column store, whose rows are moved in place to the nodes
+	 * (see ReplicaRows).
+	 *
+	 * @param partition the partition of the rows to work with
+	 * @return the estimated errors
+	 * @throws Exception if something goes wrong
+	 */
+	private double getEstimatedErrorsForBranch(ReplicaPartition partition) 
+			throws Exception {
+
+		ReplicaPartition [] localPartitions;
+		double errors = 0;
+		int i;
+
+		if (m_isLeaf) {
+			for (i=0;i<partition.numReplicas();++i) {
+				errors+=getEstimatedErrorsForDistribution(partition.distribution(i));
+			}
+			return errors;
+		}
+		else{
+			Distribution[] savedDist = localModel().m_replicaDistribution;
+			localModel().resetDistribution(partition);
+			localPartitions = partition.split(localModel());
+			localModel().m_replicaDistribution = savedDist;
+			partition = null;
+			for (i=0;i<m_sons.length;i++)
+				errors = errors+
+				son(i).getEstimatedErrorsForBranch(localPartitions[i]);
+			return errors;
+		}
+	}
+
 	/**
 	 * Computes estimated errors for leaf.
 	 * 
@@ -384,6 +469,47 @@ extends ClassifierTree {
 		}
 	}
 
+	/**
+	 * Computes new distributions of instances for nodes
+	 * in tree, from the given rows, which are moved in place to the
+	 * nodes (see ReplicaRows).
+	 *
+	 * @param rows the rows to compute the distributions for
+	 * @throws Exception if something goes wrong
+	 */
+	private void newDistribution(ReplicaRows rows) throws Exception {
+
+		rows.sort();
+		newDistribution(m_toSelectModel.partition(rows));
+	}
+
+	/**
+	 * Computes new distributions of instances for nodes
+	 * in tree, from the given partition of rows.
+	 *
+	 * @param partition the partition of the rows
+	 * @throws Exception if something goes wrong
+	 */
+	private void newDistribution(ReplicaPartition partition) throws Exception {
+
+		ReplicaPartition [] localPartitions;
+
+		localModel().resetDistribution(partition);
+		m_trainRows = partition.rows();
+		if (!m_isLeaf){
+			localPartitions = partition.split(localModel());
+			partition = null;
+			for (int i = 0; i < m_sons.length; i++)
+				son(i).newDistribution(localPartitions[i]);
+		} else {
+
+			// Check whether there are some instances at the leaf now!
+			if (!Utils.eq(partition.sumOfWeights(), 0)) {
+				m_isEmpty = false;
+			}
+		}
+	}
+
 	/**
 	 * Method just exists to make program easier to read.
 	 */
@@ -0,0 +1,266 @@
+package weka.classifiers.trees.oj48;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import weka.core.Instance;
+import weka.core.Instances;
+
+/**
+ * Column store that reads replicated data from a binary file of column
+ * chunks (see ReplicaChunkWriter) through memory-mapped buffers, so the
+ * training data is never loaded into the heap.
+ *
+ * Every chunk is mapped on its own. The rows are numbered across the
+ * chunks in the order of the file, so the rows of a node, which are in
+ * increasing order (see ReplicaRows), are read with one sequential scan
+ * of the chunks. The original rows are numbered across the chunks in the
+ * same way. Only the first row of every chunk is kept in memory,
+ * and the weights of the rows are copied on request (see weights).
+ *
+ * The class of the header is its last nominal attribute (the binary
+ * label, which is only followed by the numeric replica indicators). A
+ * file with a single chunk has the rows of the replicated data of the
+ * whole dataset (see ReplicatedInstances), in the same order.
+ *
+ * @author João Costa (ei09008@fe.up.pt)
+ * @version $Revision: 1 $
+ */
+public class ChunkedReplicaColumns extends ReplicaColumns {
+
+	/** Size of the record of a replicated row (original row, replica,
+	 *  binary label and weight) */
+	private static final int RECORD_SIZE = 4+4+1+8;
+
+	/** The open file */
+	private RandomAccessFile m_Access;
+
+	/** Header of the replicated data */
+	private Instances m_Header;
+
+	/** Index of the class (binary label) in the replicated data */
+	private int m_ClassIndex;
+
+	/** Values and records of each chunk */
+	private ByteBuffer[] m_Chunks;
+
+	/** Number of original rows of each chunk */
+	private int[] m_NumSourceRows;
+
+	/** Offset of the records in each chunk */
+	private int[] m_RecordOffsets;
+
+	/** First row of each chunk, followed by the number of rows */
+	private int[] m_FirstRows;
+
+	/** First original row of each chunk, followed by the number of
+	 *  original rows */
+	private int[] m_FirstSourceRows;
+
+	/**
+	 * Opens the given file and maps its chunks.
+	 *
+	 * @param file the file written by a ReplicaChunkWriter
+	 * @exception IOException if the file can't be read or is not a file
+	 * of replica chunks
+	 */
+	public ChunkedReplicaColumns(File file) throws IOException {
+		m_Access = new RandomAccessFile(file, "r");
+		try {
+			if (m_Access.readInt() != ReplicaChunkWriter.MAGIC) {
+				throw new IOException("Not a file of replica chunks: " + file);
+			}
+			int version = m_Access.readInt();
+			if (version != ReplicaChunkWriter.VERSION) {
+				throw new IOException("Unsupported version of replica chunks: " + version);
+			}
+			byte[] headerBytes = new byte[m_Access.readInt()];
+			m_Access.readFully(headerBytes);
+			m_Header = new Instances(new StringReader(new String(headerBytes, "UTF-8")));
+			for (m_ClassIndex=m_Header.numAttributes()-1;m_ClassIndex>=0;--m_ClassIndex) {
+				if (m_Header.attribute(m_ClassIndex).isNominal()) {
+					break;
+				}
+			}
+			if (m_ClassIndex<0) {
+				throw new IOException("No binary label in replica chunks: " + file);
+			}
+			m_Header.setClassIndex(m_ClassIndex);
+
+			FileChannel channel = m_Access.getChannel();
+			List<ByteBuffer> chunks = new ArrayList<ByteBuffer>();
+			List<Integer> numSourceRows = new ArrayList<Integer>();
+			List<Integer> numRows = new ArrayList<Integer>();
+			long offset = m_Access.getFilePointer();
+			long totalRows = 0;
+			long totalSourceRows = 0;
+			while (true) {
+				m_Access.seek(offset);
+				int numSource = m_Access.readInt();
+				if (numSource<0) {
+					break;
+				}
+				int numReplicated = m_Access.readInt();
+				long size = 8L*m_ClassIndex*numSource+(long)RECORD_SIZE*numReplicated;
+				totalRows += numReplicated;
+				totalSourceRows += numSource;
+				if (size>Integer.MAX_VALUE || totalRows>Integer.MAX_VALUE
+						|| totalSourceRows>Integer.MAX_VALUE) {
+					throw new IOException("Too many rows in replica chunks: " + file);
+				}
+				chunks.add(channel.map(FileChannel.MapMode.READ_ONLY, offset+8, size));
+				numSourceRows.add(numSource);
+				numRows.add(numReplicated);
+				offset += 8+size;
+			}
+
+			m_Chunks = chunks.toArray(new ByteBuffer[chunks.size()]);
+			m_NumSourceRows = new int[m_Chunks.length];
+			m_RecordOffsets = new int[m_Chunks.length];
+			m_FirstRows = new int[m_Chunks.length+1];
+			m_FirstSourceRows = new int[m_Chunks.length+1];
+			for (int c=0;c<m_Chunks.length;++c) {
+				m_NumSourceRows[c] = numSourceRows.get(c);
+				m_RecordOffsets[c] = 8*m_ClassIndex*m_NumSourceRows[c];
+				m_FirstRows[c+1] = m_FirstRows[c]+numRows.get(c);
+				m_FirstSourceRows[c+1] = m_FirstSourceRows[c]+m_NumSourceRows[c];
+			}
+		}
+		catch (IOException e) {
+			close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Returns the header of the replicated data (with class).
+	 */
+	public final Instances header() {
+		return m_Header;
+	}
+
+	public final int numRows() {
+		return m_FirstRows[m_Chunks.length];
+	}
+
+	public final int numSourceRows() {
+		return m_FirstSourceRows[m_Chunks.length];
+	}
+
+	public final void gatherSources(int[] rows, int[] sources) {
+		int chunk = 0;
+		for (int i=0;i<rows.length;++i) {
+			int row = rows[i];
+			if (row<m_FirstRows[chunk] || row>=m_FirstRows[chunk+1]) {
+				chunk = chunkOf(row);
+			}
+			sources[i] = m_FirstSourceRows[chunk]+m_Chunks[chunk].getInt(record(chunk, row));
+		}
+	}
+
+	public final void gather(int attIndex, int[] rows, double[] column) {
+		int chunk = 0;
+		for (int i=0;i<rows.length;++i) {
+			int row = rows[i];
+			if (row<m_FirstRows[chunk] || row>=m_FirstRows[chunk+1]) {
+				chunk = chunkOf(row);
+			}
+			ByteBuffer buffer = m_Chunks[chunk];
+			int record = record(chunk, row);
+			if (attIndex<m_ClassIndex) {
+				int sourceRow = buffer.getInt(record);
+				column[i] = buffer.getDouble(8*(attIndex*m_NumSourceRows[chunk]+sourceRow));
+			}
+			else if (attIndex==m_ClassIndex) {
+				column[i] = buffer.get(record+8);
+			}
+			else {
+				// Replica indicators
+				column[i] = buffer.getInt(record+4)==attIndex-m_ClassIndex?1:0;
+			}
+		}
+	}
+
+	public final int label(int row) {
+		int chunk = chunkOf(row);
+		return m_Chunks[chunk].get(record(chunk, row)+8);
+	}
+
+	public final int replica(int row) {
+		int chunk = chunkOf(row);
+		return m_Chunks[chunk].getInt(record(chunk, row)+4);
+	}
+
+	/**
+	 * Returns the weight of the given row.
+	 */
+	public final double weight(int row) {
+		int chunk = chunkOf(row);
+		return m_Chunks[chunk].getDouble(record(chunk, row)+9);
+	}
+
+	/**
+	 * Returns the weight of every row, in a new array.
+	 */
+	public final double[] weights() {
+		double[] weights = new double[numRows()];
+		int row = 0;
+		for (int c=0;c<m_Chunks.length;++c) {
+			int record = m_RecordOffsets[c]+9;
+			for (;row<m_FirstRows[c+1];++row) {
+				weights[row] = m_Chunks[c].getDouble(record);
+				record += RECORD_SIZE;
+			}
+		}
+		return weights;
+	}
+
+	/**
+	 * Returns a copy of the given row as an instance of the header.
+	 */
+	public final Instance instance(int row) {
+		return instance(row, m_Header, weight(row));
+	}
+
+	/**
+	 * Closes the file (which is not deleted). The mapped buffers are
+	 * released when they are garbage collected.
+	 */
+	public void close() {
+		m_Chunks = null;
+		try {
+			m_Access.close();
+		} catch (IOException e) {} // Nothing to release
+	}
+
+	/**
+	 * Returns the chunk of the given row.
+	 */
+	private int chunkOf(int row) {
+		int low = 0;
+		int high = m_Chunks.length-1;
+		while (low<high) {
+			int middle = (low+high+1) >>> 1;
+			if (m_FirstRows[middle]<=row) {
+				low = middle;
+			}
+			else {
+				high = middle-1;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Returns the position of the record of the given row in its chunk.
+	 */
+	private int record(int chunk, int row) {
+		return m_RecordOffsets[chunk]+RECORD_SIZE*(row-m_FirstRows[chunk]);
+	}
+}
@@ -50,6 +50,12 @@ implements Cloneable, Serializable, RevisionHandler {
 	/** Active Splits */
 	protected boolean[] m_activeSplit;
 
+	/** Number of candidate splits found while building the model. */
+	protected transient int m_numCandidates;
+
+	/** Number of candidate splits whose criteria were not computed. */
+	protected transient int m_numSkippedCandidates;
+
 	/** Number of created subsets. */
 	protected int m_numSubsets;         
 
@@ -74,6 +80,35 @@ implements Cloneable, Serializable, RevisionHandler {
 	 */
 	public abstract void buildClassifier(Instances instances) throws Exception;
 
+	/**
+	 * Builds the classifier split model for the given set of instances,
+	 * using an existing partition of the instances into replicas.
+	 *
+	 * @exception Exception if something goes wrong
+	 */
+	public void buildClassifier(Instances instances, ReplicaPartition partition)
+			throws Exception {
+
+		buildClassifier(instances);
+	}
+
+	/**
+	 * Returns the number of candidate splits found while building the model.
+	 */
+	public final int numCandidates() {
+
+		return m_numCandidates;
+	}
+
+	/**
+	 * Returns the number of candidate splits whose criteria were not
+	 * computed (see ModelSelection.setBoundaryPoints).
+	 */
+	public final int numSkippedCandidates() {
+
+		return m_numSkippedCandidates;
+	}
+
 	/**
 	 * Checks if generated model is valid.
 	 */
@@ -246,18 +281,69 @@ implements Cloneable, Serializable, RevisionHandler {
 	 */
 	public void resetDistribution(Instances data) throws Exception {
 
-		m_distribution = new Distribution(data, this);
-		
-		Instances[] replicas = DataReplicator.splitReplicas(data);
-		if (m_replicaDistribution==null) {
-			m_replicaDistribution = new Distribution[replicas.length];
+		Distribution distribution = new Distribution(m_numSubsets, data.numClasses());
+		Distribution[] replicaDistribution = new Distribution[m_replicaDistribution==null ?
+				DataReplicator.getNumReplicas(data) : m_replicaDistribution.length];
+		for (int i=0;i<replicaDistribution.length;++i) {
+			replicaDistribution[i] = new Distribution(m_numSubsets, data.numClasses());
+		}
+
+		// All distributions in a single pass.
+		for (int i=0;i<data.numInstances();++i) {
+			Instance instance = data.instance(i);
+			int replica = DataReplicator.getInstanceReplica(instance);
+			int subset = whichSubset(instance);
+			if (subset != -1) {
+				distribution.add(subset, instance);
+				replicaDistribution[replica].add(subset, instance);
+			}
+			else {
+				double[] weights = weights(instance);
+				distribution.addWeights(instance, weights);
+				replicaDistribution[replica].addWeights(instance, weights);
+			}
 		}
-		else {
-			m_replicaDistribution = new Distribution[m_replicaDistribution.length];
+		m_distribution = distribution;
+		m_replicaDistribution = replicaDistribution;
+	}
+
+	/**
+	 * Sets distribution associated with model, from the given partition
+	 * of the rows of a column store, in the order of the partition.
+	 *
+	 * @exception Exception if something goes wrong
+	 */
+	public void resetDistribution(ReplicaPartition partition) throws Exception {
+
+		int numClasses = partition.data().numClasses();
+		Distribution distribution = new Distribution(m_numSubsets, numClasses);
+		Distribution[] replicaDistribution = new Distribution[m_replicaDistribution==null ?
+				partition.numReplicas() : m_replicaDistribution.length];
+		for (int i=0;i<replicaDistribution.length;++i) {
+			replicaDistribution[i] = new Distribution(m_numSubsets, numClasses);
 		}
-		for (int i=0;i<m_replicaDistribution.length;++i) {
-			m_replicaDistribution[i]=new Distribution(replicas[i],this);
+
+		// All distributions in a single pass.
+		double[] values = attIndex() < 0 ? null : partition.column(attIndex());
+		int[] replicaOf = partition.replicaOf();
+		int[] labels = partition.labels();
+		double[] weights = partition.weights();
+		for (int i=0;i<replicaOf.length;++i) {
+			int replica = replicaOf[i];
+			double value = values == null ? 0 : values[i];
+			int subset = whichSubset(replica, value);
+			if (subset != -1) {
+				distribution.add(subset, labels[i], weights[i]);
+				replicaDistribution[replica].add(subset, labels[i], weights[i]);
+			}
+			else {
+				double[] fractions = weights(replica, value);
+				distribution.addWeights(labels[i], weights[i], fractions);
+				replicaDistribution[replica].addWeights(labels[i], weights[i], fractions);
+			}
 		}
+		m_distribution = distribution;
+		m_replicaDistribution = replicaDistribution;
 	}
 
 	/**
@@ -310,6 +396,38 @@ implements Cloneable, Serializable, RevisionHandler {
 	 * @exception Exception if something goes wrong
 	 */
 	public abstract int whichSubset(Instance instance) throws Exception;
+
+	/**
+	 * Returns index of attribute for which split was generated
+	 * (-1 if there is none).
+	 */
+	public int attIndex() {
+
+		return -1;
+	}
+
+	/**
+	 * Returns weights if instances of the given replica with the given
+	 * value of the split attribute (see attIndex) are assigned to more
+	 * than one subset. Returns null if they are only assigned to one
+	 * subset.
+	 */
+	public double [] weights(int replica, double value) {
+
+		return null;
+	}
+
+	/**
+	 * Returns index of subset instances of the given replica with the
+	 * given value of the split attribute (see attIndex) are assigned to.
+	 * Returns -1 if they are assigned to more than one subset.
+	 *
+	 * @exception Exception if something goes wrong
+	 */
+	public int whichSubset(int replica, double value) throws Exception {
+
+		return 0;
+	}
 }
 
 
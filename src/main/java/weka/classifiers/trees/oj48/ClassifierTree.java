@@ -22,6 +22,12 @@
 package weka.classifiers.trees.oj48;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
 
 import weka.core.Capabilities;
 import weka.core.CapabilitiesHandler;
@@ -66,17 +72,25 @@ implements Drawable, Serializable, CapabilitiesHandler, RevisionHandler {
 	/** The training instances. */
 	protected Instances m_train;                  
 
+	/** The rows of the training instances, if the tree is grown from the
+	 *  rows of a column store (m_train is then only the header) */
+	protected transient ReplicaRows m_trainRows;
+
 	/** The pruning instances. */
 	protected Distribution[] m_test;     
 
 	/** The id for the node. */
 	protected int m_id;
 
+	/** Random number generator of the node while it is built, if the
+	 *  tree is grown in parallel (see ModelSelection.growsInParallel) */
+	protected transient Random m_random;
+
 	/** 
 	 * For getting a unique ID when outputting the tree (hashcode isn't
 	 * guaranteed unique) 
 	 */
-	private static long PRINTED_NODES = 0;
+	private static final AtomicLong PRINTED_NODES = new AtomicLong();
 
 	/**
 	 * Gets the next unique node ID.
@@ -85,7 +99,7 @@ implements Drawable, Serializable, CapabilitiesHandler, RevisionHandler {
 	 */
 	protected static long nextID() {
 
-		return PRINTED_NODES ++;
+		return PRINTED_NODES.getAndIncrement();
 	}
 
 	/**
@@ -94,7 +108,7 @@ implements Drawable, Serializable, CapabilitiesHandler, RevisionHandler {
 	 */
 	protected static void resetID() {
 
-		PRINTED_NODES = 0;
+		PRINTED_NODES.set(0);
 	}
 
 	/**
@@ -105,6 +119,17 @@ implements Drawable, Serializable, CapabilitiesHandler, RevisionHandler {
 		m_toSelectModel = toSelectLocModel;
 	}
 
+	/**
+	 * Sets the random number generator of the root while the tree is
+	 * grown in parallel. Every node gets its own generator, seeded from
+	 * the one of its parent, so the tree doesn't depend on the order in
+	 * which the nodes are built.
+	 */
+	public void setRandom(Random random) {
+
+		m_random = random;
+	}
+
 	/**
 	 * Returns default capabilities of the classifier tree.
 	 *
@@ -146,39 +171,261 @@ implements Drawable, Serializable, CapabilitiesHandler, RevisionHandler {
 	
 	public void buildTree(Instances data, boolean keepData, int depth) throws Exception {
 
-		Instances [] localInstances;
+		buildTree(data, m_toSelectModel.partition(data), keepData, depth);
+	}
+
+	/**
+	 * Builds the tree structure, using an existing partition of the data
+	 * into replicas.
+	 *
+	 * @param data the data for which the tree structure is to be
+	 * generated.
+	 * @param partition the partition of the data
+	 * @param keepData is training data to be kept?
+	 * @throws Exception if something goes wrong
+	 */
+	public void buildTree(Instances data, ReplicaPartition partition,
+			boolean keepData, int depth) throws Exception {
+
+		if (m_toSelectModel.growsLevelWise()) {
+			buildLevels(partition, keepData, depth);
+			return;
+		}
+		selectLocalModel(data, partition, keepData, depth);
+		if (!m_isLeaf) {
+			ReplicaPartition[] localPartitions = splitPartition(data, partition);
+			Instances[] localInstances = new Instances[localPartitions.length];
+			for (int i = 0; i < localPartitions.length; i++) {
+				localInstances[i] = localPartitions[i].data();
+			}
+			int numInstances = partition.numInstances();
+			data = null;
+			partition = null;
+			buildSons(localInstances, localPartitions, null, numInstances, depth);
+		}
+	}
+
+	/**
+	 * Builds the tree structure level by level, using an existing
+	 * partition of the data into replicas. The open nodes of a depth are
+	 * all grown before the ones of the next depth, so the maximum depth
+	 * of the tree is the number of levels. The sons of a node are kept in
+	 * the order of its subsets, whose rows are consecutive ranges of the
+	 * rows of the node (see ReplicaRows.split), and the values of an
+	 * attribute are read for all the nodes of a level in one sweep of the
+	 * rows of the training data (see growLevel).
+	 *
+	 * The nodes of a level are independent, so their candidate splits are
+	 * built and they are split in parallel if there is a pool (see
+	 * ModelSelection.buildsLevelInParallel). Every
+	 * node has its own random number generator (see setRandom), so the
+	 * tree is the same as the one grown depth-first in parallel.
+	 *
+	 * @param partition the partition of the data
+	 * @param keepData is training data to be kept?
+	 * @param depth the maximum depth of the tree (-1 for unlimited)
+	 * @throws Exception if something goes wrong
+	 */
+	private void buildLevels(ReplicaPartition partition, boolean keepData, int depth)
+			throws Exception {
+
+		List<ClassifierTree> nodes = new ArrayList<ClassifierTree>();
+		List<ReplicaPartition> partitions = new ArrayList<ReplicaPartition>();
+		nodes.add(this);
+		partitions.add(partition);
+		partition = null;
+		while (!nodes.isEmpty()) {
+			List<ReplicaPartition[]> subsets = growLevel(nodes, partitions, keepData, depth);
+			List<ClassifierTree> sons = new ArrayList<ClassifierTree>();
+			partitions = new ArrayList<ReplicaPartition>();
+			for (int i = 0; i < nodes.size(); i++) {
+				if (subsets.get(i) != null) {
+					sons.addAll(Arrays.asList(nodes.get(i).m_sons));
+					partitions.addAll(Arrays.asList(subsets.get(i)));
+				}
+			}
+			nodes = sons;
+			keepData = keepSonData();
+			depth--;
+		}
+	}
+
+	/**
+	 * Grows the given open nodes of a level of a tree that is built level
+	 * by level (see buildLevels). The models of the nodes are selected
+	 * together, so the candidate splits of all the nodes are built from
+	 * one pass over the rows of the level per attribute (see
+	 * ModelSelection.selectModels). The nodes are then split one by one,
+	 * and their partitions are dropped once they are split.
+	 *
+	 * @param nodes the nodes of the level
+	 * @param partitions the partition of the training data of each node
+	 * (the list is emptied)
+	 * @param keepData is training data to be kept?
+	 * @param depth the depth left to the nodes
+	 * @return the partitions of the sons of each node (null for leaves)
+	 * @throws Exception if something goes wrong
+	 */
+	private List<ReplicaPartition[]> growLevel(List<ClassifierTree> nodes,
+			List<ReplicaPartition> partitions, final boolean keepData, final int depth)
+					throws Exception {
+
+		final ReplicaPartition[] levelPartitions =
+				partitions.toArray(new ReplicaPartition[partitions.size()]);
+		partitions.clear();
+		Random[] randoms = new Random[nodes.size()];
+		for (int i = 0; i < randoms.length; i++) {
+			randoms[i] = nodes.get(i).m_random;
+		}
+		final ClassifierSplitModel[] models =
+				m_toSelectModel.selectModels(levelPartitions, randoms);
+
+		List<Callable<ReplicaPartition[]>> tasks = new ArrayList<Callable<ReplicaPartition[]>>();
+		for (int i = 0; i < nodes.size(); i++) {
+			final ClassifierTree node = nodes.get(i);
+			final int index = i;
+			tasks.add(new Callable<ReplicaPartition[]>() {
+				public ReplicaPartition[] call() throws Exception {
+
+					// The partition is not referenced once it is split
+					ReplicaPartition partition = levelPartitions[index];
+					levelPartitions[index] = null;
+					return node.growNode(partition, models[index], keepData, depth);
+				}
+			});
+		}
+
+		if (!m_toSelectModel.buildsLevelInParallel(tasks.size())) {
+			List<ReplicaPartition[]> results = new ArrayList<ReplicaPartition[]>(tasks.size());
+			for (int i = 0; i < tasks.size(); i++) {
+				results.add(tasks.get(i).call());
+				tasks.set(i, null);
+			}
+			return results;
+		}
+		return m_toSelectModel.invokeAll(tasks);
+	}
+
+	/**
+	 * Grows the node in a tree that is built level by level: sets its
+	 * local model and splits its training data, creating its sons without
+	 * building them.
+	 *
+	 * @param partition the partition of the training data
+	 * @param model the selected model of the node
+	 * @param keepData is training data to be kept?
+	 * @param depth the depth left to the node
+	 * @return the partitions of the training data of the sons (null if
+	 * the node is a leaf)
+	 * @throws Exception if something goes wrong
+	 */
+	private ReplicaPartition[] growNode(ReplicaPartition partition,
+			ClassifierSplitModel model, boolean keepData, int depth) throws Exception {
+
+		setLocalModel(partition.data(), partition, model, keepData, depth);
+		if (m_isLeaf) {
+			return null;
+		}
+		ReplicaPartition[] localPartitions = splitPartition(partition.data(), partition);
+		Random[] randoms = sonRandoms(localPartitions.length);
+		m_sons = new ClassifierTree[localPartitions.length];
+		for (int i = 0; i < m_sons.length; i++) {
+			m_sons[i] = newSon(randoms[i]);
+		}
+		return localPartitions;
+	}
+
+	/**
+	 * Selects the local model of the node, which becomes a leaf if the
+	 * model has only one subset.
+	 *
+	 * @param data the training data
+	 * @param partition the partition of the training data
+	 * @param keepData is training data to be kept?
+	 * @param depth the depth left to the node (0 = leaf)
+	 * @throws Exception if something goes wrong
+	 */
+	private void selectLocalModel(Instances data, ReplicaPartition partition,
+			boolean keepData, int depth) throws Exception {
+
+		setLocalModel(data, partition, m_random == null ?
+				m_toSelectModel.selectModel(data, partition) :
+				m_toSelectModel.selectModel(data, partition, m_random),
+				keepData, depth);
+	}
+
+	/**
+	 * Sets the selected local model of the node, which becomes a leaf if
+	 * the model has only one subset.
+	 *
+	 * @param data the training data
+	 * @param partition the partition of the training data
+	 * @param model the selected model
+	 * @param keepData is training data to be kept?
+	 * @param depth the depth left to the node (0 = leaf)
+	 * @throws Exception if something goes wrong
+	 */
+	private void setLocalModel(Instances data, ReplicaPartition partition,
+			ClassifierSplitModel model, boolean keepData, int depth) throws Exception {
 
 		if (keepData) {
-			m_train = data;
+			m_train = partition.rows() != null ? partition.data() : data;
+			m_trainRows = partition.rows();
 		}
 		m_test = null;
 		m_isLeaf = false;
 		m_isEmpty = false;
 		m_sons = null;
-		m_localModel = m_toSelectModel.selectModel(data);
+		m_localModel = model;
 		
 		if (depth==0) {
-			Instances[] replicatedData = DataReplicator.splitReplicas(data);
-			Distribution[] checkDistributions = DataReplicator.getDistributions(replicatedData);
-			m_localModel = new NoSplit(checkDistributions);
+			m_localModel = new NoSplit(partition.distributions());
 		}
 		
-		if (m_localModel.numSubsets() > 1) {
-			localInstances = m_localModel.split(data);
-			data = null;
-			m_sons = new ClassifierTree [m_localModel.numSubsets()];
-			for (int i = 0; i < m_sons.length; i++) {
-				m_sons[i] = getNewTree(localInstances[i], depth);
-				localInstances[i] = null;
-			}
-		}else{
+		if (m_localModel.numSubsets() <= 1) {
 			m_isLeaf = true;
-			if (Utils.eq(data.sumOfWeights(), 0))
+			if (Utils.eq(partition.sumOfWeights(), 0))
 				m_isEmpty = true;
-			data = null;
 		}
 	}
 
+	/**
+	 * Splits the training data of the node with its local model.
+	 *
+	 * @param data the training data
+	 * @param partition the partition of the training data
+	 * @return the partition of the training data of each son
+	 * @throws Exception if something goes wrong
+	 */
+	private ReplicaPartition[] splitPartition(Instances data, ReplicaPartition partition)
+			throws Exception {
+
+		if (partition.rows() != null) {
+
+			// Move the rows of the subsets in place, the sons only
+			// get the header.
+			return partition.split(m_localModel);
+		}
+		return partition.split(m_localModel.split(data));
+	}
+
+	/**
+	 * Returns the random number generators of the given number of sons,
+	 * seeded from the one of the node (null entries if the node has
+	 * none). The generator of the node is not used afterwards.
+	 */
+	private Random[] sonRandoms(int numSons) {
+
+		Random[] randoms = new Random[numSons];
+		if (m_random != null) {
+			for (int i = 0; i < randoms.length; i++) {
+				randoms[i] = new Random(m_random.nextLong());
+			}
+			m_random = null;
+		}
+		return randoms;
+	}
+
 	/**
 	 * Builds the tree structure with hold out set
 	 *
@@ -191,7 +438,25 @@ implements Drawable, Serializable, CapabilitiesHandler, RevisionHandler {
 	public void buildTree(Instances train, Instances test, boolean keepData, int depth)
 			throws Exception {
 
+		buildTree(train, m_toSelectModel.partition(train), test, keepData, depth);
+	}
+
+	/**
+	 * Builds the tree structure with hold out set, using an existing
+	 * partition of the training data into replicas.
+	 *
+	 * @param train the data for which the tree structure is to be
+	 * generated.
+	 * @param trainPartition the partition of the training data
+	 * @param test the test data for potential pruning
+	 * @param keepData is training Data to be kept?
+	 * @throws Exception if something goes wrong
+	 */
+	public void buildTree(Instances train, ReplicaPartition trainPartition,
+			Instances test, boolean keepData, int depth) throws Exception {
+
 		Instances [] localTrain, localTest;
+		ReplicaPartition [] localPartitions;
 		int i;
 
 		if (keepData) {
@@ -200,37 +465,87 @@ implements Drawable, Serializable, CapabilitiesHandler, RevisionHandler {
 		m_isLeaf = false;
 		m_isEmpty = false;
 		m_sons = null;
-		m_localModel = m_toSelectModel.selectModel(train, test);
+		m_localModel = m_random == null ?
+				m_toSelectModel.selectModel(train, trainPartition) :
+				m_toSelectModel.selectModel(train, trainPartition, m_random);
 		m_test = new Distribution[DataReplicator.getNumReplicas(test)];
-		Instances[] replicatedTestData = DataReplicator.splitReplicas(test);
+		ReplicaPartition testPartition = new ReplicaPartition(test);
 		for (i=0;i<m_test.length;++i) {
-			m_test[i]=new Distribution(replicatedTestData[i], m_localModel);
+			m_test[i]=new Distribution(test, testPartition.indices(i), m_localModel);
 		}
 		
 		if (depth==0) {
-			Instances[] replicatedData = DataReplicator.splitReplicas(train);
-			Distribution[] checkDistributions = DataReplicator.getDistributions(replicatedData);
-			m_localModel = new NoSplit(checkDistributions);
+			m_localModel = new NoSplit(trainPartition.distributions());
 		}
 		
 		if (m_localModel.numSubsets() > 1) {
 			localTrain = m_localModel.split(train);
 			localTest = m_localModel.split(test);
+			localPartitions = trainPartition.split(localTrain);
+			int numInstances = train.numInstances();
 			train = test = null;
-			m_sons = new ClassifierTree [m_localModel.numSubsets()];
-			for (i=0;i<m_sons.length;i++) {
-				m_sons[i] = getNewTree(localTrain[i], localTest[i], depth);
-				localTrain[i] = null;
-				localTest[i] = null;
-			}
+			trainPartition = null;
+			buildSons(localTrain, localPartitions, localTest, numInstances, depth);
 		}else{
 			m_isLeaf = true;
-			if (Utils.eq(train.sumOfWeights(), 0))
+			if (Utils.eq(trainPartition.sumOfWeights(), 0))
 				m_isEmpty = true;
 			train = test = null;
 		}
 	}
 
+	/**
+	 * Builds the sons of the node from the subsets of its data. If the
+	 * subtrees of the node are built in parallel (see
+	 * ModelSelection.buildsSubtreesInParallel), every son is built by a
+	 * task on the pool of the model selection.
+	 *
+	 * @param train the training data of each son
+	 * @param partitions the partition of the training data of each son
+	 * @param test the test data of each son (null without hold out set)
+	 * @param numInstances the number of training instances of the node
+	 * @throws Exception if something goes wrong
+	 */
+	private void buildSons(final Instances[] train, final ReplicaPartition[] partitions,
+			final Instances[] test, int numInstances, final int depth) throws Exception {
+
+		m_sons = new ClassifierTree [train.length];
+		final Random[] randoms = sonRandoms(train.length);
+
+		if (!m_toSelectModel.buildsSubtreesInParallel(numInstances)) {
+			for (int i = 0; i < m_sons.length; i++) {
+				if (test == null) {
+					m_sons[i] = getNewTree(train[i], partitions[i], randoms[i], depth);
+				}
+				else {
+					m_sons[i] = getNewTree(train[i], partitions[i], test[i], randoms[i], depth);
+					test[i] = null;
+				}
+				train[i] = null;
+				partitions[i] = null;
+			}
+			return;
+		}
+
+		List<Callable<ClassifierTree>> tasks = new ArrayList<Callable<ClassifierTree>>();
+		for (int i = 0; i < m_sons.length; i++) {
+			final int son = i;
+			tasks.add(new Callable<ClassifierTree>() {
+				public ClassifierTree call() throws Exception {
+
+					// The son doesn't stay referenced once it is built
+					ReplicaPartition partition = partitions[son];
+					partitions[son] = null;
+					if (test == null) {
+						return getNewTree(train[son], partition, randoms[son], depth);
+					}
+					return getNewTree(train[son], partition, test[son], randoms[son], depth);
+				}
+			});
+		}
+		m_sons = m_toSelectModel.invokeAll(tasks).toArray(m_sons);
+	}
+
 	/** 
 	 * Classifies an instance.
 	 *
@@ -265,6 +580,7 @@ implements Drawable, Serializable, CapabilitiesHandler, RevisionHandler {
 	public final void cleanup(Instances justHeaderInfo) {
 
 		m_train = justHeaderInfo;
+		m_trainRows = null;
 		m_test = null;
 		if (!m_isLeaf)
 			for (int i = 0; i < m_sons.length; i++)
@@ -299,13 +615,17 @@ implements Drawable, Serializable, CapabilitiesHandler, RevisionHandler {
 			boolean useLaplace) 
 					throws Exception {
 
-		Instances replicas = DataReplicator.replicateInstance(instance);
+		ReplicaEncoder encoder = ReplicaEncoder.threadEncoder();
 		// P(y>Ci)
-		double [] prob = new double[DataReplicator.getNumReplicas(replicas)];
+		double [] prob = new double[ReplicaEncoder.numReplicas(instance)];
 		
-		for (Instance inst:replicas) {
-			int index     = DataReplicator.getInstanceReplica(inst);
-			prob[index]   = distributionForInstance(inst, useLaplace)[1];
+		for (int i=0;i<prob.length;++i) {
+			Instance inst = encoder.encode(instance, i);
+			if (!useLaplace) {
+				prob[i] = getProbs(1, inst, 1);
+			} else {
+				prob[i] = getProbsLaplace(1, inst, 1);
+			}
 		}
 		
 		// Enforce P(y>Ci) <= P(y>Ci-1)
@@ -469,30 +789,60 @@ implements Drawable, Serializable, CapabilitiesHandler, RevisionHandler {
 	 * Returns a newly created tree.
 	 *
 	 * @param data the training data
+	 * @param partition the partition of the training data
+	 * @param random the random number generator of the tree (can be null)
 	 * @return the generated tree
 	 * @throws Exception if something goes wrong
 	 */
-	protected ClassifierTree getNewTree(Instances data, int depth) throws Exception {
+	protected ClassifierTree getNewTree(Instances data, ReplicaPartition partition,
+			Random random, int depth) throws Exception {
+
+		ClassifierTree newTree = newSon(random);
+		newTree.buildTree(data, partition, keepSonData(), depth-1);
+
+		return newTree;
+	}
+
+	/**
+	 * Returns a newly created tree for a son of the node, which is not
+	 * built.
+	 *
+	 * @param random the random number generator of the tree (can be null)
+	 * @return the new tree
+	 * @throws Exception if something goes wrong
+	 */
+	protected ClassifierTree newSon(Random random) throws Exception {
 
 		ClassifierTree newTree = new ClassifierTree(m_toSelectModel);
-		newTree.buildTree(data, false, depth-1);
+		newTree.setRandom(random);
 
 		return newTree;
 	}
 
+	/**
+	 * Returns true if the sons of the node keep their training data.
+	 */
+	protected boolean keepSonData() {
+
+		return false;
+	}
+
 	/**
 	 * Returns a newly created tree.
 	 *
 	 * @param train the training data
+	 * @param trainPartition the partition of the training data
 	 * @param test the pruning data.
+	 * @param random the random number generator of the tree (can be null)
 	 * @return the generated tree
 	 * @throws Exception if something goes wrong
 	 */
-	protected ClassifierTree getNewTree(Instances train, Instances test, int depth) 
-			throws Exception {
+	protected ClassifierTree getNewTree(Instances train, ReplicaPartition trainPartition,
+			Instances test, Random random, int depth) throws Exception {
 
 		ClassifierTree newTree = new ClassifierTree(m_toSelectModel);
-		newTree.buildTree(train, test, false, depth-1);
+		newTree.setRandom(random);
+		newTree.buildTree(train, trainPartition, test, false, depth-1);
 
 		return newTree;
 	}
@@ -9,6 +9,8 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.SortedSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 
 import weka.classifiers.CostMatrix;
@@ -23,91 +25,107 @@ public class DataReplicator {
 	// s - s value from the data replication method
 	// s = 0 => s = K-1
 	public static Instances[] frankHall(Instances data,int s,CostMatrix[] cMatrix) {
+		return frankHall(data,s,cMatrix,null);
+	}
+
+	// Builds the replicas on the given pool (null = current thread)
+	// The replicas are returned in the same order
+	public static Instances[] frankHall(final Instances data,final int s,
+			final CostMatrix[] cMatrix,ForkJoinPool pool) {
 		
 		int K = data.classAttribute().numValues();
-		Instances[] replicas = new Instances[K-1];
+		final Instances[] replicas = new Instances[K-1];
 		
 		// Create Replicas
+		if (pool == null) {
+			for (int i=0; i<replicas.length; ++i) {
+				replicas[i]=frankHallReplica(data,s,cMatrix,i);
+			}
+		}
+		else {
+			List<ForkJoinTask<?>> tasks = new ArrayList<ForkJoinTask<?>>();
+			for (int i=0; i<replicas.length; ++i) {
+				final int replica = i;
+				tasks.add(pool.submit(new Runnable() {
+					public void run() {
+						replicas[replica]=frankHallReplica(data,s,cMatrix,replica);
+					}
+				}));
+			}
+			for (ForkJoinTask<?> task:tasks) {
+				task.join();
+			}
+		}
+		
+		return replicas;
+	}
+
+	private static Instances frankHallReplica(Instances data,int s,CostMatrix[] cMatrix,int i) {
+		
+		int K = data.classAttribute().numValues();
 		
 		List<String> binaryValues = new ArrayList<String>();
 		binaryValues.add("0");
 		binaryValues.add("1");
 		
-		for (int i=0; i<replicas.length; ++i) {
-			Instances replica = new Instances(data);
-			int oldClassIndex=replica.classIndex();
-			replica.insertAttributeAt(
-					new Attribute("Binary Label", binaryValues),
-					replica.numAttributes()
-			);
-			replica.setClassIndex(replica.numAttributes()-1);
-			for (int j=0;j<data.size(); ++j) {
-				Instance instance = replica.get(j);
-				double oldClass = instance.value(oldClassIndex);
-				// Lin and Li weights
-				try {
-					if (cMatrix!=null) {
-						double weight =
-						    (K-1)*Math.abs(
-						        cMatrix[j].getElement((int)oldClass,i)-
-						        cMatrix[j].getElement((int)oldClass,i+1)
-						    );
-						instance.setWeight(weight);
-					}
-				} catch(Exception e) {} // Keep default weight
-				
-				
-				if (oldClass<=i) {
-					instance.setClassValue(binaryValues.get(0));
-				}
-				else {
-					instance.setClassValue(binaryValues.get(1));
+		Instances replica = new Instances(data);
+		int oldClassIndex=replica.classIndex();
+		replica.insertAttributeAt(
+				new Attribute("Binary Label", binaryValues),
+				replica.numAttributes()
+		);
+		replica.setClassIndex(replica.numAttributes()-1);
+		for (int j=0;j<data.size(); ++j) {
+			Instance instance = replica.get(j);
+			double oldClass = instance.value(oldClassIndex);
+			// Lin and Li weights
+			try {
+				if (cMatrix!=null) {
+					double weight =
+					    (K-1)*Math.abs(
+					        cMatrix[j].getElement((int)oldClass,i)-
+					        cMatrix[j].getElement((int)oldClass,i+1)
+					    );
+					instance.setWeight(weight);
 				}
+			} catch(Exception e) {} // Keep default weight
+			
+			
+			if (oldClass<=i) {
+				instance.setClassValue(binaryValues.get(0));
+			}
+			else {
+				instance.setClassValue(binaryValues.get(1));
 			}
+		}
 
-			if (s>0) { // Clean extra points
-				for (int j=0;j<replica.size(); ++j) {
-					Instance instance = replica.get(j);
-					if (instance.value(oldClassIndex)<i-s ||
-						instance.value(oldClassIndex)>i+s) {
-						replica.delete(j--);
-					}
+		if (s>0) { // Clean extra points
+			for (int j=0;j<replica.size(); ++j) {
+				Instance instance = replica.get(j);
+				if (instance.value(oldClassIndex)<i-s ||
+					instance.value(oldClassIndex)>i+s) {
+					replica.delete(j--);
 				}
 			}
-
-			replica.deleteAttributeAt(oldClassIndex);
-			replicas[i]=replica;
 		}
-		
-		return replicas;
+
+		replica.deleteAttributeAt(oldClassIndex);
+		return replica;
 	}
 
 	// s - s value from the data replication method
 	// s = 0 => s = K-1
-	public static Instances replicateData(Instances data, int s, CostMatrix cMatrix[]) {
-		Instances[] replicas = frankHall(data,s,cMatrix);
-		Instances results = new Instances(replicas[0]);
-		results.clear();
-		
-		int extraAttributes = replicas.length - 1;
-		for (int i=0;i<extraAttributes;++i) {
-			results.insertAttributeAt(new Attribute("rep"+i), results.numAttributes());
-		}
-		
-		for (int i=0;i<replicas.length;++i) {
-			for (int j=0;j<replicas[i].size();++j) {
-				Instance instance = new DenseInstance(replicas[i].get(j));
-				for (int k=0;k<extraAttributes;++k) {
-					instance.insertAttributeAt(instance.numAttributes());
-					instance.setValue(instance.numAttributes()-1, 0);
-					if (k==i-1) {
-						instance.setValue(instance.numAttributes()-1, 1);
-					}
-				}
-				results.add(instance);
-			}
-		}
-		return results;
+	// The replicated data is a view over the original rows
+	// (see ReplicatedInstances)
+	public static ReplicatedInstances replicateData(Instances data, int s, CostMatrix cMatrix[]) {
+		return new ReplicatedInstances(data,s,cMatrix);
+	}
+
+	// Builds the replicas on the given pool (null = current thread)
+	// The order of the replicated instances does not depend on the pool
+	public static ReplicatedInstances replicateData(Instances data, int s, CostMatrix cMatrix[],
+			ForkJoinPool pool) {
+		return new ReplicatedInstances(data,s,cMatrix,pool);
 	}
 
 	public static Instances replicateInstance(Instance instance) {
@@ -128,50 +146,13 @@ public class DataReplicator {
 	}
 	
 	public static Instances[] splitReplicas(Instances data) {
-		int numReplicas = getNumReplicas(data);
-		Instances[] replicas = new Instances[numReplicas];
-		
-		// For every replica
-		for (int i=0;i<numReplicas;++i) {
-			// Copy every instance
-			replicas[i]=new Instances(data);
-			// Check every instance
-			for (int j=0;j<replicas[i].size();++j) {
-				Instance instance = replicas[i].get(j);
-				// And remove the wrong ones
-				boolean allZero = true;
-				for (int k=instance.classIndex()+1;k<instance.numAttributes();++k) {
-					if (instance.value(k)==1) {
-						allZero = false;
-						if (k!=instance.classIndex()+i) {
-							replicas[i].remove(j);
-							j--;
-							break;
-						}
-					}
-				}
-				if (allZero && i>0) {
-					replicas[i].remove(j);
-					j--;
-				}
-			}
-		}
-		
-		return replicas;
+		return new ReplicaPartition(data).replicas();
 	}
 	
+	// The projection is a view over the replicated data
+	// (see ProjectedInstances)
 	public static Instances projectInstances(Instances data,int attIndex) {
-		Instances newData = new Instances(data);
-		for (int i=0;i<newData.classIndex();++i) {
-			if (i!=attIndex) {
-				newData.deleteAttributeAt(i);
-				if (i<attIndex) {
-					attIndex--;
-				}
-				i--;
-			}
-		}
-		return newData;
+		return new ProjectedInstances(data,attIndex);
 	}
 	
 	public static Distribution[] getDistributions(Instances[] replicas) throws Exception {
@@ -216,6 +197,13 @@ public class DataReplicator {
 	}
 	
 	public static int getInstanceReplica(Instance instance) {
+		// Replicated views know their replica
+		if (instance instanceof ReplicaInstance) {
+			return ((ReplicaInstance)instance).replica();
+		}
+		if (instance instanceof ProjectedInstance) {
+			return getInstanceReplica(((ProjectedInstance)instance).source());
+		}
 		for (int i=instance.classIndex()+1;i<instance.numAttributes();++i) {
 			if (instance.value(i)==1) {return i-instance.classIndex();}
 		}
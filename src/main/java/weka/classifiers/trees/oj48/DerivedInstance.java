@@ -0,0 +1,184 @@
+package weka.classifiers.trees.oj48;
+
+import weka.core.AbstractInstance;
+import weka.core.DenseInstance;
+import weka.core.Instance;
+import weka.core.Utils;
+
+/**
+ * Abstract class for instances whose values are derived from another
+ * instance when they are read (see ReplicaInstance and
+ * ProjectedInstance).
+ *
+ * The values are only copied if the instance is modified (e.g. an
+ * attribute is deleted); from then on the copy is used. The weight is
+ * kept by the instance itself.
+ *
+ * @author João Costa (ei09008@fe.up.pt)
+ * @version $Revision: 1 $
+ */
+public abstract class DerivedInstance extends AbstractInstance {
+
+	/** for serialization */
+	private static final long serialVersionUID = 4707212569410263587L;
+
+	/** The instance the values are derived from */
+	protected Instance m_Source;
+
+	/**
+	 * Creates a view of the given instance.
+	 *
+	 * @param source the instance the values are derived from
+	 * @param weight the weight of the instance
+	 */
+	protected DerivedInstance(Instance source, double weight) {
+		m_Source = source;
+		m_Weight = weight;
+		m_AttValues = null;
+		m_Dataset = null;
+	}
+
+	/**
+	 * Copy constructor. The dataset is not copied.
+	 *
+	 * @param instance the instance to copy
+	 */
+	protected DerivedInstance(DerivedInstance instance) {
+		m_Source = instance.m_Source;
+		m_Weight = instance.m_Weight;
+		if (instance.m_AttValues != null) {
+			m_AttValues = instance.m_AttValues.clone();
+		}
+		m_Dataset = null;
+	}
+
+	/**
+	 * Returns the instance the values are derived from.
+	 */
+	public final Instance source() {
+		return m_Source;
+	}
+
+	/**
+	 * Returns the number of attributes derived from the source.
+	 */
+	protected abstract int numDerivedAttributes();
+
+	/**
+	 * Returns the value of the given attribute derived from the source.
+	 */
+	protected abstract double derivedValue(int attIndex);
+
+	public int index(int position) {
+		return position;
+	}
+
+	public Instance mergeInstance(Instance inst) {
+		int m = 0;
+		double [] newVals = new double[numAttributes() + inst.numAttributes()];
+		for (int j = 0; j < numAttributes(); j++, m++) {
+			newVals[m] = value(j);
+		}
+		for (int j = 0; j < inst.numAttributes(); j++, m++) {
+			newVals[m] = inst.value(j);
+		}
+		return new DenseInstance(1.0, newVals);
+	}
+
+	public final int numAttributes() {
+		if (m_AttValues != null) {
+			return m_AttValues.length;
+		}
+		return numDerivedAttributes();
+	}
+
+	public int numValues() {
+		return numAttributes();
+	}
+
+	public void replaceMissingValues(double[] array) {
+		materialize();
+		for (int i = 0; i < m_AttValues.length; i++) {
+			if (isMissing(i)) {
+				m_AttValues[i] = array[i];
+			}
+		}
+	}
+
+	public void setValue(int attIndex, double value) {
+		materialize();
+		m_AttValues[attIndex] = value;
+	}
+
+	public void setValueSparse(int indexOfIndex, double value) {
+		setValue(index(indexOfIndex), value);
+	}
+
+	public double[] toDoubleArray() {
+		if (m_AttValues != null) {
+			return m_AttValues.clone();
+		}
+		double[] values = new double[numAttributes()];
+		for (int i=0;i<values.length;++i) {
+			values[i] = derivedValue(i);
+		}
+		return values;
+	}
+
+	public String toStringNoWeight() {
+		return toStringNoWeight(AbstractInstance.s_numericAfterDecimalPoint);
+	}
+
+	public String toStringNoWeight(int afterDecimalPoint) {
+		StringBuffer text = new StringBuffer();
+		for (int i = 0; i < numAttributes(); i++) {
+			if (i > 0) {
+				text.append(",");
+			}
+			text.append(toString(i, afterDecimalPoint));
+		}
+		return text.toString();
+	}
+
+	public final double value(int attIndex) {
+		if (m_AttValues != null) {
+			return m_AttValues[attIndex];
+		}
+		return derivedValue(attIndex);
+	}
+
+	public double valueSparse(int indexOfIndex) {
+		return value(indexOfIndex);
+	}
+
+	protected void forceDeleteAttributeAt(int position) {
+		materialize();
+		double[] newValues = new double[m_AttValues.length - 1];
+		System.arraycopy(m_AttValues, 0, newValues, 0, position);
+		if (position < m_AttValues.length - 1) {
+			System.arraycopy(m_AttValues, position + 1,
+					newValues, position,
+					m_AttValues.length - (position + 1));
+		}
+		m_AttValues = newValues;
+	}
+
+	protected void forceInsertAttributeAt(int position) {
+		materialize();
+		double[] newValues = new double[m_AttValues.length + 1];
+		System.arraycopy(m_AttValues, 0, newValues, 0, position);
+		newValues[position] = Utils.missingValue();
+		System.arraycopy(m_AttValues, position, newValues,
+				position + 1, m_AttValues.length - position);
+		m_AttValues = newValues;
+	}
+
+	/**
+	 * Copies the derived values, so that they can be modified.
+	 */
+	protected final void materialize() {
+		if (m_AttValues == null) {
+			m_AttValues = toDoubleArray();
+		}
+	}
+}
@@ -106,6 +106,23 @@ public class Distribution
       add(0,(Instance) enu.nextElement());
   }
 
+  /**
+   * Creates a distribution with only one bag according
+   * to the given class values and weights of the instances
+   * with the given indices.
+   */
+  public Distribution(int numClasses, int[] classValues, double[] weights,
+		      int[] indices) {
+    
+    m_perClassPerBag = new double [1][0];
+    m_perBag = new double [1];
+    totaL = 0;
+    m_perClass = new double [numClasses];
+    m_perClassPerBag[0] = new double [numClasses];
+    for (int i = 0; i < indices.length; i++)
+      add(0,classValues[indices[i]],weights[indices[i]]);
+  }
+
   /**
    * Creates a distribution according to given instances and
    * split model.
@@ -140,6 +157,38 @@ public class Distribution
     }
   }
 
+  /**
+   * Creates a distribution according to the instances of source
+   * with the given indices and split model.
+   *
+   * @exception Exception if something goes wrong
+   */
+  public Distribution(Instances source, int[] indices,
+		      ClassifierSplitModel modelToUse)
+       throws Exception {
+
+    int index;
+    Instance instance;
+    double[] weights;
+
+    m_perClassPerBag = new double [modelToUse.numSubsets()][0];
+    m_perBag = new double [modelToUse.numSubsets()];
+    totaL = 0;
+    m_perClass = new double [source.numClasses()];
+    for (int i = 0; i < modelToUse.numSubsets(); i++)
+      m_perClassPerBag[i] = new double [source.numClasses()];
+    for (int i = 0; i < indices.length; i++) {
+      instance = source.instance(indices[i]);
+      index = modelToUse.whichSubset(instance);
+      if (index != -1)
+	add(index, instance);
+      else {
+	weights = modelToUse.weights(instance);
+	addWeights(instance, weights);
+      }
+    }
+  }
+
   /**
    * Creates distribution with only one bag by merging all
    * bags of given distribution.
@@ -265,6 +314,18 @@ public class Distribution
     totaL = totaL-weight;
   }
 
+  /**
+   * Adds given weight of given class to given bag.
+   */
+  public final void add(int bagIndex, int classIndex, double weight) {
+    
+    m_perClassPerBag[bagIndex][classIndex] = 
+      m_perClassPerBag[bagIndex][classIndex]+weight;
+    m_perBag[bagIndex] = m_perBag[bagIndex]+weight;
+    m_perClass[classIndex] = m_perClass[classIndex]+weight;
+    totaL = totaL+weight;
+  }
+
   /**
    * Adds counts to given bag.
    */
@@ -322,6 +383,86 @@ public class Distribution
     }
   }
 
+  /**
+   * Adds all instances of source with the given indices and unknown
+   * values for given attribute, weighted according to frequency of
+   * instances in each bag.
+   *
+   * @exception Exception if something goes wrong
+   */
+  public final void addInstWithUnknown(Instances source, int[] indices,
+				       int attIndex)
+       throws Exception {
+
+    double [] probs;
+    double weight,newWeight;
+    int classIndex;
+    Instance instance;
+    int j;
+
+    probs = new double [m_perBag.length];
+    for (j=0;j<m_perBag.length;j++) {
+      if (Utils.eq(totaL, 0)) {
+	probs[j] = 1.0 / probs.length;
+      } else {
+	probs[j] = m_perBag[j]/totaL;
+      }
+    }
+    for (int i = 0; i < indices.length; i++) {
+      instance = source.instance(indices[i]);
+      if (instance.isMissing(attIndex)) {
+	classIndex = (int)instance.classValue();
+	weight = instance.weight();
+	m_perClass[classIndex] = m_perClass[classIndex]+weight;
+	totaL = totaL+weight;
+	for (j = 0; j < m_perBag.length; j++) {
+	  newWeight = probs[j]*weight;
+	  m_perClassPerBag[j][classIndex] = m_perClassPerBag[j][classIndex]+
+	    newWeight;
+	  m_perBag[j] = m_perBag[j]+newWeight;
+	}
+      }
+    }
+  }
+  /**
+   * Adds all instances with the given indices and unknown values,
+   * weighted according to frequency of instances in each bag. The
+   * values of the attribute, the class values and the weights of the
+   * instances are given by arrays (see ReplicaPartition).
+   */
+  public final void addInstWithUnknown(double[] values, int[] classValues,
+				       double[] weights, int[] indices) {
+
+    double [] probs;
+    double weight,newWeight;
+    int classIndex;
+    int j;
+
+    probs = new double [m_perBag.length];
+    for (j=0;j<m_perBag.length;j++) {
+      if (Utils.eq(totaL, 0)) {
+	probs[j] = 1.0 / probs.length;
+      } else {
+	probs[j] = m_perBag[j]/totaL;
+      }
+    }
+    for (int i = 0; i < indices.length; i++) {
+      if (Utils.isMissingValue(values[indices[i]])) {
+	classIndex = classValues[indices[i]];
+	weight = weights[indices[i]];
+	m_perClass[classIndex] = m_perClass[classIndex]+weight;
+	totaL = totaL+weight;
+	for (j = 0; j < m_perBag.length; j++) {
+	  newWeight = probs[j]*weight;
+	  m_perClassPerBag[j][classIndex] = m_perClassPerBag[j][classIndex]+
+	    newWeight;
+	  m_perBag[j] = m_perBag[j]+newWeight;
+	}
+      }
+    }
+  }
+
+
   /**
    * Adds all instances in given range to given bag.
    *
@@ -347,6 +488,30 @@ public class Distribution
     totaL += sumOfWeights;
   }
 
+  /**
+   * Adds all instances whose indices are in given range of the
+   * index array to given bag, according to their class values
+   * and weights.
+   */
+  public final void addRange(int bagIndex,int[] classValues,double[] weights,
+			     int[] indices,int startIndex, int lastPlusOne) {
+
+    double sumOfWeights = 0;
+    int classIndex;
+    double weight;
+    int i;
+
+    for (i = startIndex; i < lastPlusOne; i++) {
+      classIndex = classValues[indices[i]];
+      weight = weights[indices[i]];
+      sumOfWeights = sumOfWeights+weight;
+      m_perClassPerBag[bagIndex][classIndex] += weight;
+      m_perClass[classIndex] += weight;
+    }
+    m_perBag[bagIndex] += sumOfWeights;
+    totaL += sumOfWeights;
+  }
+
   /**
    * Adds given instance to all bags weighting it according to given weights.
    *
@@ -369,6 +534,22 @@ public class Distribution
     }
   }
 
+  /**
+   * Adds given weight of given class to all bags weighting it according
+   * to given weights.
+   */
+  public final void addWeights(int classIndex, double weight,
+			       double [] weights) {
+
+    for (int i=0;i<m_perBag.length;i++) {
+      double bagWeight = weight * weights[i];
+      m_perClassPerBag[i][classIndex] = m_perClassPerBag[i][classIndex] + bagWeight;
+      m_perBag[i] = m_perBag[i] + bagWeight;
+      m_perClass[classIndex] = m_perClass[classIndex] + bagWeight;
+      totaL = totaL + bagWeight;
+    }
+  }
+
   /**
    * Checks if at least two bags contain a minimum number of instances.
    */
@@ -713,6 +894,17 @@ public class Distribution
     m_perBag[to] += weight;
   }
 
+  /**
+   * Shifts the given weight of the given class from one bag to another one.
+   */
+  public final void shift(int from,int to,int classIndex,double weight) {
+
+    m_perClassPerBag[from][classIndex] -= weight;
+    m_perClassPerBag[to][classIndex] += weight;
+    m_perBag[from] -= weight;
+    m_perBag[to] += weight;
+  }
+
   /**
    * Shifts all instances in given range from one bag to another one.
    *
@@ -737,6 +929,29 @@ public class Distribution
       m_perBag[to] += weight;
     }
   }
+
+  /**
+   * Shifts all instances whose indices are in given range of the
+   * index array from one bag to another one, according to their
+   * class values and weights.
+   */
+  public final void shiftRange(int from,int to,int[] classValues,
+			       double[] weights,int[] indices,
+			       int startIndex,int lastPlusOne) {
+    
+    int classIndex;
+    double weight;
+    int i;
+
+    for (i = startIndex; i < lastPlusOne; i++) {
+      classIndex = classValues[indices[i]];
+      weight = weights[indices[i]];
+      m_perClassPerBag[from][classIndex] -= weight;
+      m_perClassPerBag[to][classIndex] += weight;
+      m_perBag[from] -= weight;
+      m_perBag[to] += weight;
+    }
+  }
   
   /**
    * Returns the revision string.
@@ -38,15 +38,11 @@ public abstract class EntropyBasedSplitCrit
   protected static double log2 = Math.log(2);
 
   /**
-   * Help method for computing entropy.
+   * Help method for computing entropy (see EntropyKernel.nLogN).
    */
   public double logFunc(double num) {
 
-    // Constant hard coded for efficiency reasons
-    if (num < 1e-6)
-      return 0;
-    else
-      return num*Math.log(num)/log2;
+    return EntropyKernel.nLogN(num);
   }
 
   /**
@@ -70,6 +66,11 @@ public abstract class EntropyBasedSplitCrit
     double returnValue = 0;
     int i,j;
 
+    if (bags.numBags() == 2 && bags.numClasses() == 2)
+      return EntropyKernel.newEnt(bags.perClassPerBag(0,0),bags.perClassPerBag(0,1),
+                                  bags.perBag(0),bags.perClassPerBag(1,0),
+                                  bags.perClassPerBag(1,1),bags.perBag(1));
+
     for (i=0;i<bags.numBags();i++){
       for (j=0;j<bags.numClasses();j++)
 	returnValue = returnValue+logFunc(bags.perClassPerBag(i,j));
@@ -0,0 +1,109 @@
+package weka.classifiers.trees.oj48;
+
+import weka.core.Utils;
+
+/**
+ * Entropy computations of the split criteria over primitive values, for
+ * distributions with two bags and two classes (the binary labels of the
+ * replicas).
+ *
+ * x*log2(x) is looked up in a table when x is a small integer (e.g. for
+ * unweighted data), and is computed as by EntropyBasedSplitCrit.logFunc
+ * otherwise, so the results are the same. The information gain of a
+ * block of candidate splits (see SplitCandidates) is computed by a single
+ * loop over one array per cell of the distributions.
+ *
+ * @author João Costa (ei09008@fe.up.pt)
+ * @version $Revision: 1 $
+ */
+public final class EntropyKernel {
+
+	/** The log of 2. */
+	private static final double LOG2 = Math.log(2);
+
+	/** Number of integers whose x*log2(x) is kept */
+	private static final int TABLE_SIZE = 1 << 16;
+
+	/** x*log2(x) of the integers below TABLE_SIZE */
+	private static final double[] NLOGN = new double[TABLE_SIZE];
+
+	static {
+		for (int i=1;i<TABLE_SIZE;++i) {
+			double num = i;
+			NLOGN[i] = num*Math.log(num)/LOG2;
+		}
+	}
+
+	private EntropyKernel() {
+	}
+
+	/**
+	 * Returns x*log2(x), or 0 if x is below 1e-6.
+	 */
+	public static double nLogN(double num) {
+
+		// Constant hard coded for efficiency reasons
+		if (num < 1e-6) {
+			return 0;
+		}
+		if (num < TABLE_SIZE) {
+			int n = (int)num;
+			if (n == num) {
+				return NLOGN[n];
+			}
+		}
+		return num*Math.log(num)/LOG2;
+	}
+
+	/**
+	 * Computes entropy of a distribution with two bags and two classes
+	 * after splitting (see EntropyBasedSplitCrit.newEnt).
+	 *
+	 * @param c00 weight of the first class in the first bag
+	 * @param c01 weight of the second class in the first bag
+	 * @param bag0 weight of the first bag
+	 * @param c10 weight of the first class in the second bag
+	 * @param c11 weight of the second class in the second bag
+	 * @param bag1 weight of the second bag
+	 */
+	public static double newEnt(double c00, double c01, double bag0,
+			double c10, double c11, double bag1) {
+
+		return -(nLogN(c00)+nLogN(c01)-nLogN(bag0)+nLogN(c10)+nLogN(c11)-nLogN(bag1));
+	}
+
+	/**
+	 * Computes the information gain of a block of distributions with two
+	 * bags and two classes, in the same way as
+	 * InfoGainSplitCrit.splitCritValue(bags, totalNoInst, oldEnt).
+	 *
+	 * @param count the number of distributions
+	 * @param c00 weight of the first class in the first bag, per distribution
+	 * @param c01 weight of the second class in the first bag, per distribution
+	 * @param bag0 weight of the first bag, per distribution
+	 * @param c10 weight of the first class in the second bag, per distribution
+	 * @param c11 weight of the second class in the second bag, per distribution
+	 * @param bag1 weight of the second bag, per distribution
+	 * @param total weight of every distribution
+	 * @param totalNoInst weight of ALL instances (including the
+	 * ones with missing values)
+	 * @param oldEnt entropy with respect to "no-split"-model
+	 * @param gains the array that receives the information gains
+	 */
+	public static void infoGains(int count, double[] c00, double[] c01, double[] bag0,
+			double[] c10, double[] c11, double[] bag1, double total, double totalNoInst,
+			double oldEnt, double[] gains) {
+
+		double knownRate = 1-(totalNoInst-total)/totalNoInst;
+		for (int k=0;k<count;++k) {
+			double newEnt = -(nLogN(c00[k])+nLogN(c01[k])-nLogN(bag0[k])+
+					nLogN(c10[k])+nLogN(c11[k])-nLogN(bag1[k]));
+			gains[k] = knownRate*(oldEnt-newEnt);
+		}
+
+		// Splits with no gain are useless.
+		for (int k=0;k<count;++k) {
+			gains[k] = Utils.eq(gains[k],0) ? 0 : gains[k]/total;
+		}
+	}
+}
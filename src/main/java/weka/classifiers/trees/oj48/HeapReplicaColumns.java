@@ -0,0 +1,117 @@
+package weka.classifiers.trees.oj48;
+
+import weka.core.Instance;
+import weka.core.Instances;
+
+/**
+ * Column store that keeps every column of the replicated data in
+ * an array of doubles on the heap.
+ *
+ * The values of the original attributes are kept once per original row,
+ * and each replicated row only keeps its original row, its replica and
+ * its binary label. The replica indicators are derived from the replica.
+ *
+ * @author João Costa (ei09008@fe.up.pt)
+ * @version $Revision: 1 $
+ */
+public class HeapReplicaColumns extends ReplicaColumns {
+
+	/** Values of each original attribute, per original row */
+	private double[][] m_Values;
+
+	/** Original row of each row */
+	private int[] m_Sources;
+
+	/** Replica of each row */
+	private int[] m_Replicas;
+
+	/** Binary label of each row */
+	private byte[] m_Labels;
+
+	/** Index of the class (binary label) in the replicated data */
+	private int m_ClassIndex;
+
+	/** Number of original rows */
+	private int m_NumSourceRows;
+
+	/**
+	 * Copies the given replicated data into columns.
+	 *
+	 * @param data the replicated data
+	 */
+	public HeapReplicaColumns(ReplicatedInstances data) {
+		Instances source = data.sourceData();
+		int sourceClassIndex = source.classIndex();
+		int numRows = numRows(data);
+		m_ClassIndex = data.classIndex();
+		m_NumSourceRows = source.numInstances();
+
+		m_Values = new double[m_ClassIndex][m_NumSourceRows];
+		for (int i=0;i<m_NumSourceRows;++i) {
+			Instance instance = source.instance(i);
+			for (int j=0;j<m_ClassIndex;++j) {
+				m_Values[j][i] = instance.value(j<sourceClassIndex?j:j+1);
+			}
+		}
+
+		m_Sources = new int[numRows];
+		m_Replicas = new int[numRows];
+		m_Labels = new byte[numRows];
+		for (int i=0;i<data.numInstances();++i) {
+			if (!(data.instance(i) instanceof ReplicaInstance)) {
+				continue;
+			}
+			ReplicaInstance instance = (ReplicaInstance)data.instance(i);
+			int row = instance.row();
+			if (row<0) {
+				continue;
+			}
+			m_Sources[row] = data.sourceRow(row);
+			m_Replicas[row] = instance.replica();
+			m_Labels[row] = (byte)instance.classValue();
+		}
+	}
+
+	public final int numRows() {
+		return m_Labels.length;
+	}
+
+	public final int numSourceRows() {
+		return m_NumSourceRows;
+	}
+
+	public final void gatherSources(int[] rows, int[] sources) {
+		for (int i=0;i<rows.length;++i) {
+			sources[i] = m_Sources[rows[i]];
+		}
+	}
+
+	public final void gather(int attIndex, int[] rows, double[] column) {
+		if (attIndex<m_ClassIndex) {
+			double[] values = m_Values[attIndex];
+			for (int i=0;i<rows.length;++i) {
+				column[i] = values[m_Sources[rows[i]]];
+			}
+		}
+		else if (attIndex==m_ClassIndex) {
+			for (int i=0;i<rows.length;++i) {
+				column[i] = m_Labels[rows[i]];
+			}
+		}
+		else {
+			// Replica indicators
+			int replica = attIndex-m_ClassIndex;
+			for (int i=0;i<rows.length;++i) {
+				column[i] = m_Replicas[rows[i]]==replica?1:0;
+			}
+		}
+	}
+
+	public final int label(int row) {
+		return m_Labels[row];
+	}
+
+	public final int replica(int row) {
+		return m_Replicas[row];
+	}
+}
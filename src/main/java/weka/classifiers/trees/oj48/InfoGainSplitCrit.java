@@ -110,6 +110,24 @@ public class InfoGainSplitCrit
     return numerator/bags.total();
   }
   
+  /**
+   * This method computes the information gain in the same way 
+   * C4.5 does, for a block of candidate splits.
+   *
+   * @param candidates the candidate splits
+   * @param totalNoInst weight of ALL instances 
+   * @param oldEnt entropy with respect to "no-split"-model.
+   * @param gains the array that receives the information gain
+   * of each candidate
+   */
+  public final void splitCritValues(SplitCandidates candidates,double totalNoInst,
+                                    double oldEnt,double[] gains) {
+
+    EntropyKernel.infoGains(candidates.size(),candidates.m_Cell00,candidates.m_Cell01,
+                            candidates.m_Bag0,candidates.m_Cell10,candidates.m_Cell11,
+                            candidates.m_Bag1,candidates.m_Total,totalNoInst,oldEnt,gains);
+  }
+
   /**
    * Returns the revision string.
    * 
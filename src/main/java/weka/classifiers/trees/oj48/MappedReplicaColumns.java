@@ -0,0 +1,378 @@
+package weka.classifiers.trees.oj48;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import weka.core.Instance;
+import weka.core.Instances;
+
+/**
+ * Column store that keeps the replicated data in binary files, which are
+ * read through memory-mapped buffers, so the columns don't use heap space.
+ *
+ * The files are compact: the values of the original attributes are written
+ * once per original row, and each replicated row only keeps a record of
+ * its original row, its replica, its binary label and its weight. The
+ * replica indicators are derived from the replica.
+ *
+ * The store is written in batches of original rows, either from replicated
+ * data in memory (a single batch) or from a {@link StreamingReplicator},
+ * so the data doesn't have to be loaded. The values of each batch are
+ * written one attribute after the other, and the records are written in
+ * the order of the rows. Every batch but the last has the same number of
+ * original rows, so the position of a value is computed, not looked up.
+ *
+ * The files are mapped in segments, which are addressed with long
+ * positions, so a file can be larger than a buffer (2 GB).
+ *
+ * The files are deleted when the store is closed.
+ *
+ * @author João Costa (ei09008@fe.up.pt)
+ * @version $Revision: 1 $
+ */
+public class MappedReplicaColumns extends ReplicaColumns {
+
+	/** Size of the record of a replicated row (original row, replica,
+	 *  binary label and weight) */
+	private static final int RECORD_SIZE = 4+4+1+8;
+
+	/** Size of a segment of the values (a multiple of their size) */
+	private static final long VALUE_SEGMENT = 1L << 30;
+
+	/** Size of a segment of the records (a multiple of their size) */
+	private static final long RECORD_SEGMENT = (long)RECORD_SIZE << 26;
+
+	/**
+	 * Mapped segments of a file, read through long positions. A value
+	 * never spans two segments.
+	 */
+	private static final class Segments {
+
+		/** The mapped segments */
+		private final ByteBuffer[] m_Buffers;
+
+		/** Size of every segment but the last */
+		private final long m_Size;
+
+		/**
+		 * Maps the given file in segments of the given size.
+		 */
+		Segments(File file, long length, long size) throws IOException {
+			m_Size = size;
+			m_Buffers = new ByteBuffer[(int)((length+size-1)/size)];
+			RandomAccessFile access = new RandomAccessFile(file, "r");
+			try {
+				FileChannel channel = access.getChannel();
+				for (int k=0;k<m_Buffers.length;++k) {
+					m_Buffers[k] = channel.map(FileChannel.MapMode.READ_ONLY,
+							k*size, Math.min(size, length-k*size));
+				}
+			}
+			finally {
+
+				// The buffers stay valid
+				access.close();
+			}
+		}
+
+		final double getDouble(long position) {
+			return m_Buffers[(int)(position/m_Size)].getDouble((int)(position%m_Size));
+		}
+
+		final int getInt(long position) {
+			return m_Buffers[(int)(position/m_Size)].getInt((int)(position%m_Size));
+		}
+
+		final byte get(long position) {
+			return m_Buffers[(int)(position/m_Size)].get((int)(position%m_Size));
+		}
+	}
+
+	/** The file with the values */
+	private File m_ValueFile;
+
+	/** The file with the records */
+	private File m_RecordFile;
+
+	/** The values, while they are written */
+	private DataOutputStream m_ValueOut;
+
+	/** The records, while they are written */
+	private DataOutputStream m_RecordOut;
+
+	/** Values of each original attribute, per batch of original rows */
+	private Segments m_Values;
+
+	/** Record of each row */
+	private Segments m_Records;
+
+	/** Header of the replicated data */
+	private Instances m_Header;
+
+	/** Index of the class (binary label) in the replicated data */
+	private int m_ClassIndex;
+
+	/** Number of rows */
+	private int m_NumRows;
+
+	/** Number of original rows */
+	private int m_NumSourceRows;
+
+	/** Number of original rows of every batch but the last */
+	private int m_BatchSize;
+
+	/**
+	 * Writes the given replicated data into new files in the given
+	 * directory and maps them. The rows of the store are the rows of the
+	 * data (see ReplicaInstance.row), which must be in increasing order.
+	 *
+	 * @param data the replicated data
+	 * @param directory the directory of the files (null for the default
+	 * temporary directory)
+	 * @exception IOException if the files can't be written
+	 */
+	public MappedReplicaColumns(ReplicatedInstances data, File directory)
+			throws IOException {
+		try {
+			create(new Instances(data, 0), directory);
+			append(data);
+			map();
+		}
+		catch (IOException e) {
+			close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Writes the replicated data of the given replicator into new files
+	 * in the given directory and maps them, so only one batch of the data
+	 * is in memory at a time. The replicator is read to the end.
+	 *
+	 * @param replicator the replicator
+	 * @param directory the directory of the files (null for the default
+	 * temporary directory)
+	 * @exception Exception if the data can't be read or written
+	 */
+	public MappedReplicaColumns(StreamingReplicator replicator, File directory)
+			throws Exception {
+		try {
+			create(new Instances(DataReplicator.replicateData(
+					new Instances(replicator.structure(), 0), 0, null), 0), directory);
+			ReplicatedInstances batch;
+			while ((batch = replicator.nextBatch()) != null) {
+				append(batch);
+			}
+			map();
+		}
+		catch (Exception e) {
+			close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Creates the files.
+	 */
+	private void create(Instances header, File directory) throws IOException {
+		m_Header = header;
+		m_ClassIndex = header.classIndex();
+		m_ValueFile = File.createTempFile("oj48", ".values", directory);
+		m_ValueFile.deleteOnExit();
+		m_RecordFile = File.createTempFile("oj48", ".records", directory);
+		m_RecordFile.deleteOnExit();
+		m_ValueOut = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(m_ValueFile)));
+		m_RecordOut = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(m_RecordFile)));
+	}
+
+	/**
+	 * Writes a batch of replicated data.
+	 */
+	private void append(ReplicatedInstances batch) throws IOException {
+		Instances source = batch.sourceData();
+		int numSource = source.numInstances();
+		if (numSource==0) {
+			return;
+		}
+		if (m_BatchSize==0) {
+			m_BatchSize = numSource;
+		}
+		else if (numSource>m_BatchSize || m_NumSourceRows%m_BatchSize!=0) {
+			throw new IOException("Only the last batch can have fewer rows!");
+		}
+		if ((long)m_NumRows+numRows(batch)>Integer.MAX_VALUE) {
+			throw new IOException("Too many rows for a column store!");
+		}
+
+		for (int j=0;j<source.numAttributes();++j) {
+			if (j!=source.classIndex()) {
+				for (int i=0;i<numSource;++i) {
+					m_ValueOut.writeDouble(source.instance(i).value(j));
+				}
+			}
+		}
+		int numRows = 0;
+		for (int i=0;i<batch.numInstances();++i) {
+			if (!(batch.instance(i) instanceof ReplicaInstance)) {
+				continue;
+			}
+			ReplicaInstance instance = (ReplicaInstance)batch.instance(i);
+			int row = instance.row();
+			if (row<numRows) {
+				throw new IOException("The rows of the replicated data are not in order!");
+			}
+
+			// Rows without instances (e.g. deleted) are empty
+			for (;numRows<row;++numRows) {
+				writeRecord(0, 0, 0, 0);
+			}
+			writeRecord(m_NumSourceRows+batch.sourceRow(row), instance.replica(),
+					(int)instance.classValue(), instance.weight());
+			numRows++;
+		}
+		m_NumSourceRows += numSource;
+		m_NumRows += numRows;
+	}
+
+	/**
+	 * Writes the record of a row.
+	 */
+	private void writeRecord(int sourceRow, int replica, int label, double weight)
+			throws IOException {
+		m_RecordOut.writeInt(sourceRow);
+		m_RecordOut.writeInt(replica);
+		m_RecordOut.writeByte(label);
+		m_RecordOut.writeDouble(weight);
+	}
+
+	/**
+	 * Closes the written files and maps them.
+	 */
+	private void map() throws IOException {
+		m_ValueOut.close();
+		m_ValueOut = null;
+		m_RecordOut.close();
+		m_RecordOut = null;
+		m_Values = new Segments(m_ValueFile, 8L*m_ClassIndex*m_NumSourceRows,
+				VALUE_SEGMENT);
+		m_Records = new Segments(m_RecordFile, (long)RECORD_SIZE*m_NumRows,
+				RECORD_SEGMENT);
+	}
+
+	/**
+	 * Returns the header of the replicated data (with class).
+	 */
+	public final Instances header() {
+		return m_Header;
+	}
+
+	public final int numRows() {
+		return m_NumRows;
+	}
+
+	public final int numSourceRows() {
+		return m_NumSourceRows;
+	}
+
+	public final void gatherSources(int[] rows, int[] sources) {
+		for (int i=0;i<rows.length;++i) {
+			sources[i] = m_Records.getInt((long)RECORD_SIZE*rows[i]);
+		}
+	}
+
+	public final void gather(int attIndex, int[] rows, double[] column) {
+		if (attIndex<m_ClassIndex) {
+			for (int i=0;i<rows.length;++i) {
+				int sourceRow = m_Records.getInt((long)RECORD_SIZE*rows[i]);
+				column[i] = m_Values.getDouble(position(attIndex, sourceRow));
+			}
+		}
+		else if (attIndex==m_ClassIndex) {
+			for (int i=0;i<rows.length;++i) {
+				column[i] = m_Records.get((long)RECORD_SIZE*rows[i]+8);
+			}
+		}
+		else {
+			// Replica indicators
+			int replica = attIndex-m_ClassIndex;
+			for (int i=0;i<rows.length;++i) {
+				column[i] = m_Records.getInt((long)RECORD_SIZE*rows[i]+4)==replica?1:0;
+			}
+		}
+	}
+
+	public final int label(int row) {
+		return m_Records.get((long)RECORD_SIZE*row+8);
+	}
+
+	public final int replica(int row) {
+		return m_Records.getInt((long)RECORD_SIZE*row+4);
+	}
+
+	/**
+	 * Returns the weight of the given row.
+	 */
+	public final double weight(int row) {
+		return m_Records.getDouble((long)RECORD_SIZE*row+9);
+	}
+
+	/**
+	 * Returns the weight of every row, in a new array.
+	 */
+	public final double[] weights() {
+		double[] weights = new double[m_NumRows];
+		for (int row=0;row<m_NumRows;++row) {
+			weights[row] = weight(row);
+		}
+		return weights;
+	}
+
+	/**
+	 * Returns a copy of the given row as an instance of the header.
+	 */
+	public final Instance instance(int row) {
+		return instance(row, m_Header, weight(row));
+	}
+
+	/**
+	 * Closes and deletes the files. The mapped buffers are released when
+	 * they are garbage collected.
+	 */
+	public void close() {
+		m_Values = null;
+		m_Records = null;
+		for (DataOutputStream out : new DataOutputStream[] {m_ValueOut, m_RecordOut}) {
+			if (out != null) {
+				try {
+					out.close();
+				} catch (IOException e) {} // Deleted anyway
+			}
+		}
+		m_ValueOut = null;
+		m_RecordOut = null;
+		if (m_ValueFile != null) {
+			m_ValueFile.delete();
+		}
+		if (m_RecordFile != null) {
+			m_RecordFile.delete();
+		}
+	}
+
+	/**
+	 * Returns the position of the value of the given attribute for the
+	 * given original row.
+	 */
+	private long position(int attIndex, int sourceRow) {
+		int first = sourceRow-sourceRow%m_BatchSize; // First row of the batch
+		int batchSize = Math.min(m_BatchSize, m_NumSourceRows-first);
+		return 8L*((long)first*m_ClassIndex+(long)attIndex*batchSize+(sourceRow-first));
+	}
+}
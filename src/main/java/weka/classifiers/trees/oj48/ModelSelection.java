@@ -22,6 +22,13 @@
 package weka.classifiers.trees.oj48;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicLong;
 
 import weka.core.Instances;
 import weka.core.RevisionHandler;
@@ -38,6 +45,398 @@ public abstract class ModelSelection
   /** for serialization */
   private static final long serialVersionUID = -4850147125096133642L;
 
+  /** Column store of the training data (only used while training). */
+  protected transient ReplicaColumns m_columns;
+
+  /** Quantized attributes of the training data (only used while training). */
+  protected transient ReplicaBins m_bins;
+
+  /** Pool that evaluates the candidate splits (only used while training). */
+  protected transient ForkJoinPool m_pool;
+
+  /** Minimum work of a node (instances times candidate attributes) for
+      its candidate splits to be evaluated in parallel. */
+  public static final long MIN_PARALLEL_WORK = 50000;
+
+  /** Minimum number of instances of a node for its subtrees to be built
+      in parallel (0 = the tree is grown sequentially). */
+  protected transient int m_subtreeCutoff;
+
+  /** Grow the trees level by level instead of depth-first? */
+  protected transient boolean m_levelWise;
+
+  /** Only evaluate the numeric split candidates at boundary points? */
+  protected boolean m_boundaryPoints;
+
+  /** Minimum number of instances of a node for its numeric splits to be
+      searched at the split points of a quantile sketch (0 = never). */
+  protected transient int m_sketchCutoff;
+
+  /** Number of split points proposed by the quantile sketch of a node. */
+  protected transient int m_sketchCuts;
+
+  /** Number of candidate splits of the built models. */
+  private final AtomicLong m_numCandidates = new AtomicLong();
+
+  /** Number of candidate splits of the built models that were skipped. */
+  private final AtomicLong m_numSkippedCandidates = new AtomicLong();
+
+  /**
+   * Sets the column store of the training data, so that partitions
+   * read the training instances from it.
+   */
+  public void setColumns(ReplicaColumns columns) {
+
+    m_columns = columns;
+  }
+
+  /**
+   * Sets the quantized attributes of the column store, so that numeric
+   * splits are searched from class histograms.
+   */
+  public void setBins(ReplicaBins bins) {
+
+    m_bins = bins;
+  }
+
+  /**
+   * Sets the pool that evaluates the candidate splits of large nodes
+   * (null to evaluate them in the current thread).
+   */
+  public void setPool(ForkJoinPool pool) {
+
+    m_pool = pool;
+  }
+
+  /**
+   * Sets whether the numeric splits are only evaluated at boundary points,
+   * i.e. between values whose instances are not all of the same class
+   * (the best split by information gain is always at a boundary point).
+   */
+  public void setBoundaryPoints(boolean boundaryPoints) {
+
+    m_boundaryPoints = boundaryPoints;
+  }
+
+  /**
+   * Sets the minimum number of instances of a node for its numeric
+   * splits to be only searched at the given number of split points,
+   * at quantiles of the values of the node (see
+   * ReplicaPartition.sketchLimits). Smaller nodes are searched exactly.
+   *
+   * @param cutoff the minimum number of instances (0 to always search
+   * exactly)
+   * @param numCuts the number of split points (greater than zero)
+   */
+  public void setSketch(int cutoff, int numCuts) {
+
+    if (cutoff > 0 && numCuts <= 0) {
+      throw new IllegalArgumentException("The number of split points of a sketch must be "
+          + "greater than zero!");
+    }
+    m_sketchCutoff = cutoff;
+    m_sketchCuts = numCuts;
+  }
+
+  /**
+   * Returns the number of split points proposed by the quantile sketch
+   * of a node with the given partition, or 0 if its numeric splits are
+   * searched exactly (see setSketch).
+   */
+  public int sketchCuts(ReplicaPartition partition) {
+
+    if (m_sketchCutoff > 0 && partition.numInstances() >= m_sketchCutoff) {
+      return m_sketchCuts;
+    }
+    return 0;
+  }
+
+  /**
+   * Returns the number of candidate splits of the models built so far.
+   */
+  public long numCandidates() {
+
+    return m_numCandidates.get();
+  }
+
+  /**
+   * Returns the number of candidate splits of the models built so far
+   * whose criteria were not computed (see setBoundaryPoints).
+   */
+  public long numSkippedCandidates() {
+
+    return m_numSkippedCandidates.get();
+  }
+
+  /**
+   * Sets the minimum number of instances of a node for its subtrees to
+   * be built in parallel on the pool (0 to grow the tree sequentially).
+   */
+  public void setSubtreeCutoff(int cutoff) {
+
+    m_subtreeCutoff = cutoff;
+  }
+
+  /**
+   * Sets whether the trees are grown level by level, i.e. all the nodes
+   * of a depth before the ones of the next depth (see
+   * ClassifierTree.buildTree).
+   */
+  public void setLevelWise(boolean levelWise) {
+
+    m_levelWise = levelWise;
+  }
+
+  /**
+   * Returns true if the trees are grown level by level.
+   */
+  public boolean growsLevelWise() {
+
+    return m_levelWise;
+  }
+
+  /**
+   * Returns true if the trees are grown in parallel or level by level,
+   * i.e. if every node of a tree uses its own random number generator.
+   */
+  public boolean growsInParallel() {
+
+    return m_subtreeCutoff > 0 || m_levelWise;
+  }
+
+  /**
+   * Returns true if the given number of nodes of a level of a tree grown
+   * level by level are grown in parallel.
+   */
+  public boolean buildsLevelInParallel(int numNodes) {
+
+    return m_pool != null && numNodes > 1;
+  }
+
+  /**
+   * Returns true if the subtrees of a node with the given number of
+   * instances are built in parallel.
+   */
+  public boolean buildsSubtreesInParallel(int numInstances) {
+
+    return m_pool != null && m_subtreeCutoff > 0 && numInstances >= m_subtreeCutoff;
+  }
+
+  /**
+   * Runs the given tasks on the pool and waits for all of them. The tasks
+   * are forked if the current thread already runs in the pool, and
+   * submitted to it otherwise.
+   *
+   * @param tasks the tasks
+   * @return the results of the tasks, in the same order
+   * @exception Exception if a task fails
+   */
+  public <T> List<T> invokeAll(List<Callable<T>> tasks) throws Exception {
+
+    List<ForkJoinTask<T>> forkJoinTasks = new ArrayList<ForkJoinTask<T>>(tasks.size());
+    for (Callable<T> callable : tasks) {
+      ForkJoinTask<T> task = ForkJoinTask.adapt(callable);
+      if (ForkJoinTask.getPool() == m_pool) {
+        task.fork();
+      }
+      else {
+        m_pool.submit(task);
+      }
+      forkJoinTasks.add(task);
+    }
+    List<T> results = new ArrayList<T>(tasks.size());
+    for (ForkJoinTask<T> task : forkJoinTasks) {
+      results.add(task.join());
+    }
+    return results;
+  }
+
+  /**
+   * Builds the given candidate split models on the given dataset. The
+   * models are independent, so they are built in parallel if there is
+   * a pool and the node is large enough; the results are the same.
+   *
+   * @param models the models to build (null entries are skipped)
+   * @param data the dataset
+   * @param partition the partition of the dataset into replicas
+   * @exception Exception if a model can't be built
+   */
+  protected void buildModels(ClassifierSplitModel[] models, final Instances data,
+      final ReplicaPartition partition) throws Exception {
+
+    int numModels = 0;
+    for (int i = 0; i < models.length; i++) {
+      if (models[i] != null) {
+        numModels++;
+      }
+    }
+    if (m_pool == null || numModels < 2 ||
+        (long)partition.numInstances() * numModels < MIN_PARALLEL_WORK) {
+      for (int i = 0; i < models.length; i++) {
+        if (models[i] != null) {
+          models[i].buildClassifier(data, partition);
+        }
+      }
+    }
+    else {
+      List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+      for (int i = 0; i < models.length; i++) {
+        if (models[i] == null) {
+          continue;
+        }
+        final ClassifierSplitModel model = models[i];
+        tasks.add(new Callable<Void>() {
+          public Void call() throws Exception {
+            model.buildClassifier(data, partition);
+            return null;
+          }
+        });
+      }
+      invokeAll(tasks);
+    }
+
+    countCandidates(models);
+  }
+
+  /**
+   * Builds the candidate split models of the open nodes of a level of a
+   * tree that is grown level by level, attribute by attribute instead
+   * of node by node: the values of an attribute are read for all the
+   * nodes in one pass over the rows of the level (see ReplicaLevel) and
+   * the models of the nodes on it are built with them. Groups of as many
+   * attributes as the threads of the pool are read at a time, and their
+   * models are built in parallel; the results are the same.
+   *
+   * @param models the models to build for each node (null entries are
+   * skipped)
+   * @param partitions the partition of the data of each node
+   * @exception Exception if a model can't be built
+   */
+  protected void buildLevelModels(ClassifierSplitModel[][] models,
+      ReplicaPartition[] partitions) throws Exception {
+
+    int numAttributes = 0;
+    ReplicaPartition[] read = new ReplicaPartition[partitions.length];
+    for (int i = 0; i < models.length; i++) {
+      if (models[i] != null) {
+        numAttributes = Math.max(numAttributes, models[i].length);
+        read[i] = partitions[i];
+      }
+    }
+    ReplicaLevel level = ReplicaLevel.of(read);
+    read = null;
+    int groupSize = m_pool == null ? 1 : m_pool.getParallelism();
+
+    for (int first = 0; first < numAttributes; first += groupSize) {
+      int last = Math.min(numAttributes, first + groupSize);
+      List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+      long work = 0;
+      for (int att = first; att < last; att++) {
+        boolean[] nodes = new boolean[models.length];
+        boolean readAttribute = false;
+        for (int i = 0; i < models.length; i++) {
+          if (models[i] == null || att >= models[i].length || models[i][att] == null) {
+            continue;
+          }
+          final ClassifierSplitModel model = models[i][att];
+          final ReplicaPartition partition = partitions[i];
+          tasks.add(new Callable<Void>() {
+            public Void call() throws Exception {
+              model.buildClassifier(partition.data(), partition);
+              return null;
+            }
+          });
+          work += partition.numInstances();
+
+          // The histograms of quantized attributes don't need the values
+          nodes[i] = !partition.isQuantized(att);
+          readAttribute |= nodes[i];
+        }
+        if (level != null && readAttribute) {
+          level.read(att, nodes);
+        }
+      }
+
+      if (m_pool == null || tasks.size() < 2 || work < MIN_PARALLEL_WORK) {
+        for (int t = 0; t < tasks.size(); t++) {
+          tasks.get(t).call();
+        }
+      }
+      else {
+        invokeAll(tasks);
+      }
+      if (level != null) {
+        for (int att = first; att < last; att++) {
+          level.clear(att);
+        }
+      }
+    }
+
+    for (int i = 0; i < models.length; i++) {
+      if (models[i] != null) {
+        countCandidates(models[i]);
+      }
+    }
+  }
+
+  /**
+   * Adds the candidate splits of the given built models to the counts.
+   */
+  private void countCandidates(ClassifierSplitModel[] models) {
+
+    for (int i = 0; i < models.length; i++) {
+      if (models[i] != null) {
+        m_numCandidates.addAndGet(models[i].numCandidates());
+        m_numSkippedCandidates.addAndGet(models[i].numSkippedCandidates());
+      }
+    }
+  }
+
+  /**
+   * Partitions the given dataset into replicas.
+   */
+  public ReplicaPartition partition(Instances data) {
+
+    return new ReplicaPartition(data, m_columns, m_bins);
+  }
+
+  /**
+   * Partitions the given rows of the column store into replicas (the
+   * quantized attributes are not used).
+   */
+  public ReplicaPartition partition(ReplicaRows rows) {
+
+    return new ReplicaPartition(rows, m_columns, null);
+  }
+
+  /**
+   * Partitions the given dataset into replicas from its rows in the
+   * column store, so that the subsets of the splits are moved in place
+   * instead of copied (see ReplicaRows). If some instance is not a row
+   * of the store, the dataset is partitioned as by partition.
+   */
+  public ReplicaPartition rowPartition(Instances data) {
+
+    ReplicaRows rows = m_columns == null ? null : ReplicaRows.of(data, m_columns);
+    if (rows == null) {
+      return partition(data);
+    }
+    return new ReplicaPartition(rows, m_columns, m_bins);
+  }
+
+  /**
+   * Partitions all the rows of the column store into replicas, with the
+   * given weights, without the training instances (see
+   * ChunkedReplicaColumns).
+   *
+   * @param header the header of the training data
+   * @param weights the weight of every row of the store
+   */
+  public ReplicaPartition rowPartition(Instances header, double[] weights) {
+
+    return new ReplicaPartition(ReplicaRows.of(header, weights), m_columns, m_bins);
+  }
+
   /**
    * Selects a model for the given dataset.
    *
@@ -45,6 +444,54 @@ public abstract class ModelSelection
    */
   public abstract ClassifierSplitModel selectModel(Instances data) throws Exception;
 
+  /**
+   * Selects a model for the given dataset, using an existing partition
+   * of the data into replicas.
+   *
+   * @exception Exception if model can't be selected
+   */
+  public ClassifierSplitModel selectModel(Instances data, ReplicaPartition partition)
+       throws Exception {
+
+    return selectModel(data);
+  }
+
+  /**
+   * Selects a model for the given dataset, using an existing partition
+   * of the data into replicas and the random number generator of the
+   * node (see growsInParallel).
+   *
+   * @exception Exception if model can't be selected
+   */
+  public ClassifierSplitModel selectModel(Instances data, ReplicaPartition partition,
+      Random random) throws Exception {
+
+    return selectModel(data, partition);
+  }
+
+  /**
+   * Selects the models of the open nodes of a level of a tree that is
+   * grown level by level, using the partitions of their data into
+   * replicas and their random number generators (null to use the one of
+   * the selection). Every model is the one selectModel would select.
+   *
+   * @param partitions the partition of the data of each node
+   * @param randoms the random number generator of each node
+   * @return the model of each node
+   * @exception Exception if a model can't be selected
+   */
+  public ClassifierSplitModel[] selectModels(ReplicaPartition[] partitions,
+      Random[] randoms) throws Exception {
+
+    ClassifierSplitModel[] models = new ClassifierSplitModel[partitions.length];
+    for (int i = 0; i < partitions.length; i++) {
+      models[i] = randoms[i] == null ?
+          selectModel(partitions[i].data(), partitions[i]) :
+          selectModel(partitions[i].data(), partitions[i], randoms[i]);
+    }
+    return models;
+  }
+
   /**
    * Selects a model for the given train data using the given test data
    *
@@ -0,0 +1,78 @@
+package weka.classifiers.trees.oj48;
+
+import weka.core.Instance;
+import weka.core.RevisionUtils;
+
+/**
+ * Instance of a projected replicated dataset (see ProjectedInstances)
+ * that is backed by a row of the replicated data.
+ *
+ * The values of the selected attribute, the binary label and the replica
+ * indicators are read from the replicated row. The values are only copied
+ * if the instance is modified. The weight is copied when the instance is
+ * created, so later changes to the weight of the replicated row don't
+ * affect it.
+ *
+ * @author João Costa (ei09008@fe.up.pt)
+ * @version $Revision: 1 $
+ */
+public class ProjectedInstance extends DerivedInstance {
+
+	/** for serialization */
+	private static final long serialVersionUID = 6012286815546932157L;
+
+	/** The selected attribute of the replicated row */
+	protected int m_AttIndex;
+
+	/**
+	 * Creates a view of the given replicated row that only exposes
+	 * the given attribute, the binary label and the replica indicators.
+	 *
+	 * @param source the replicated row (must have access to its dataset)
+	 * @param attIndex the selected attribute (lower than the class index)
+	 */
+	public ProjectedInstance(Instance source, int attIndex) {
+		super(source, source.weight());
+		m_AttIndex = attIndex;
+	}
+
+	/**
+	 * Copy constructor. The dataset is not copied.
+	 *
+	 * @param instance the instance to copy
+	 */
+	public ProjectedInstance(ProjectedInstance instance) {
+		super(instance);
+		m_AttIndex = instance.m_AttIndex;
+	}
+
+	/**
+	 * Produces a shallow copy of this instance.
+	 */
+	public Object copy() {
+		ProjectedInstance result = new ProjectedInstance(this);
+		result.m_Dataset = m_Dataset;
+		return result;
+	}
+
+	protected int numDerivedAttributes() {
+		// Selected attribute, binary label and replica indicators
+		return m_Source.numAttributes()-m_Source.classIndex()+1;
+	}
+
+	protected double derivedValue(int attIndex) {
+		if (attIndex==0) {
+			return m_Source.value(m_AttIndex);
+		}
+		return m_Source.value(m_Source.classIndex()+attIndex-1);
+	}
+
+	/**
+	 * Returns the revision string.
+	 *
+	 * @return		the revision
+	 */
+	public String getRevision() {
+		return RevisionUtils.extract("$Revision: 1 $");
+	}
+}
@@ -0,0 +1,55 @@
+package weka.classifiers.trees.oj48;
+
+import java.util.ArrayList;
+
+import weka.core.Attribute;
+import weka.core.Instances;
+
+/**
+ * Projection of a replicated dataset along a single attribute, which
+ * keeps only that attribute, the binary label and the replica indicators.
+ *
+ * Every projected instance is a {@link ProjectedInstance} that reads its
+ * values from the corresponding replicated instance, so projecting the
+ * data takes time linear in the number of instances and no value is
+ * copied.
+ *
+ * @author João Costa (ei09008@fe.up.pt)
+ * @version $Revision: 1 $
+ */
+public class ProjectedInstances extends Instances {
+
+	/** for serialization */
+	private static final long serialVersionUID = -5466013915395406813L;
+
+	/**
+	 * Creates the projection of the given replicated data.
+	 *
+	 * @param data the replicated data
+	 * @param attIndex the attribute to keep (lower than the class index)
+	 */
+	public ProjectedInstances(Instances data, int attIndex) {
+		super(data.relationName(), projectedAttributes(data, attIndex),
+				data.numInstances());
+		setClassIndex(1);
+
+		for (int i=0;i<data.numInstances();++i) {
+			ProjectedInstance instance = new ProjectedInstance(data.instance(i), attIndex);
+			instance.setDataset(this);
+			m_Instances.add(instance);
+		}
+	}
+
+	/**
+	 * Builds the attributes of the projected data: the selected
+	 * attribute, the binary label and the replica indicators.
+	 */
+	private static ArrayList<Attribute> projectedAttributes(Instances data, int attIndex) {
+		ArrayList<Attribute> attributes = new ArrayList<Attribute>();
+		attributes.add((Attribute)data.attribute(attIndex).copy());
+		for (int i=data.classIndex();i<data.numAttributes();++i) {
+			attributes.add((Attribute)data.attribute(i).copy());
+		}
+		return attributes;
+	}
+}
@@ -162,17 +162,20 @@ extends ClassifierTree {
 	 * Returns a newly created tree.
 	 *
 	 * @param train the training data
+	 * @param trainPartition the partition of the training data
 	 * @param test the test data
+	 * @param random the random number generator of the tree (can be null)
 	 * @return the generated tree
 	 * @throws Exception if something goes wrong
 	 */
-	protected ClassifierTree getNewTree(Instances train, Instances test, int depth) 
-			throws Exception {
+	protected ClassifierTree getNewTree(Instances train, ReplicaPartition trainPartition,
+			Instances test, Random random, int depth) throws Exception {
 
 		PruneableClassifierTree newTree = 
 				new PruneableClassifierTree(m_toSelectModel, pruneTheTree, numSets, m_cleanup,
 						m_seed);
-		newTree.buildTree(train, test, !m_cleanup, depth-1);
+		newTree.setRandom(random);
+		newTree.buildTree(train, trainPartition, test, !m_cleanup, depth-1);
 		return newTree;
 	}
 
@@ -0,0 +1,219 @@
+package weka.classifiers.trees.oj48;
+
+import java.util.Arrays;
+
+import weka.core.Utils;
+
+/**
+ * Mergeable quantile sketch of a stream of weighted values (a compactor
+ * hierarchy, as in the sketches of Manku et al. and of Karnin, Lang and
+ * Liberty).
+ *
+ * The values are kept in levels, each one with the weight of the values
+ * of the stream it stands for. When a level holds the capacity of the
+ * sketch, it is sorted and every pair of consecutive values is moved to
+ * the next level as one of them (the first or the second one, in turn)
+ * with the weight of both, so the sketch keeps about capacity times
+ * log2(n/capacity) values of a stream of n values, and the weighted rank
+ * of a value is known within about the weight of the stream times
+ * log2(n/capacity)/capacity, if the weights of the values are similar.
+ *
+ * Two sketches are merged by adding their levels, so the sketches of
+ * parts of the data (e.g. blocks of rows, chunks or threads) are merged
+ * into the sketch of all the data. The compactions don't use random
+ * numbers, so the same values added and merged in the same order always
+ * give the same sketch.
+ *
+ * @author João Costa (ei09008@fe.up.pt)
+ * @version $Revision: 1 $
+ */
+public class QuantileSketch {
+
+	/** Number of values of a level that triggers its compaction */
+	private int m_Capacity;
+
+	/** Values of each level (only the first m_Sizes[h] are used) */
+	private double[][] m_Levels;
+
+	/** Weight of each value of each level */
+	private double[][] m_Weights;
+
+	/** Number of values of each level */
+	private int[] m_Sizes;
+
+	/** Compactions of each level so far (the parity picks the values) */
+	private int[] m_Compactions;
+
+	/** Number of levels in use */
+	private int m_NumLevels;
+
+	/** Weight of the values of the stream */
+	private double m_Weight;
+
+	/**
+	 * Creates an empty sketch.
+	 *
+	 * @param capacity the number of values of a level that triggers its
+	 * compaction (at least 2)
+	 */
+	public QuantileSketch(int capacity) {
+		if (capacity<2) {
+			throw new IllegalArgumentException("Capacity of a sketch must be at least 2!");
+		}
+		m_Capacity = capacity;
+		m_Levels = new double[1][capacity];
+		m_Weights = new double[1][capacity];
+		m_Sizes = new int[1];
+		m_Compactions = new int[1];
+		m_NumLevels = 1;
+	}
+
+	/**
+	 * Adds a value with the given weight to the sketch. Values without
+	 * weight are ignored.
+	 */
+	public final void add(double value, double weight) {
+		if (!(weight>0)) {
+			return;
+		}
+		m_Levels[0][m_Sizes[0]] = value;
+		m_Weights[0][m_Sizes[0]++] = weight;
+		m_Weight += weight;
+		if (m_Sizes[0]>=m_Capacity) {
+			compact();
+		}
+	}
+
+	/**
+	 * Adds the values of the given sketch (which is not changed) to
+	 * this one.
+	 */
+	public final void merge(QuantileSketch sketch) {
+		for (int h=0;h<sketch.m_NumLevels;++h) {
+			append(h, sketch.m_Levels[h], sketch.m_Weights[h], sketch.m_Sizes[h]);
+		}
+		m_Weight += sketch.m_Weight;
+		compact();
+	}
+
+	/**
+	 * Returns the weight of the values of the stream.
+	 */
+	public final double weight() {
+		return m_Weight;
+	}
+
+	/**
+	 * Returns the distinct values of the sketch whose weighted ranks are
+	 * closest to the given number of equally spaced quantiles, in
+	 * increasing order (so there can be fewer of them).
+	 *
+	 * @param numQuantiles the number of quantiles
+	 */
+	public final double[] quantiles(int numQuantiles) {
+		int numValues = 0;
+		for (int h=0;h<m_NumLevels;++h) {
+			numValues += m_Sizes[h];
+		}
+		double[] values = new double[numValues];
+		double[] weights = new double[numValues];
+		int k = 0;
+		for (int h=0;h<m_NumLevels;++h) {
+			System.arraycopy(m_Levels[h], 0, values, k, m_Sizes[h]);
+			System.arraycopy(m_Weights[h], 0, weights, k, m_Sizes[h]);
+			k += m_Sizes[h];
+		}
+		sort(values, weights, numValues);
+
+		double[] quantiles = new double[numQuantiles];
+		int numFound = 0;
+		double rank = 0;
+		int q = 1;
+		for (int i=0;i<numValues && q<=numQuantiles;++i) {
+			rank += weights[i];
+			if (rank*(numQuantiles+1) < q*m_Weight) {
+				continue;
+			}
+			if (numFound==0 || quantiles[numFound-1]<values[i]) {
+				quantiles[numFound++] = values[i];
+			}
+			while (q<=numQuantiles && rank*(numQuantiles+1) >= q*m_Weight) {
+				q++;
+			}
+		}
+		return Arrays.copyOf(quantiles, numFound);
+	}
+
+	/**
+	 * Appends the given values and weights to a level.
+	 */
+	private void append(int level, double[] values, double[] weights, int numValues) {
+		if (level>=m_NumLevels) {
+			if (level>=m_Levels.length) {
+				m_Levels = Arrays.copyOf(m_Levels, level+1);
+				m_Weights = Arrays.copyOf(m_Weights, level+1);
+				m_Sizes = Arrays.copyOf(m_Sizes, level+1);
+				m_Compactions = Arrays.copyOf(m_Compactions, level+1);
+			}
+			for (int h=m_NumLevels;h<=level;++h) {
+				m_Levels[h] = new double[m_Capacity];
+				m_Weights[h] = new double[m_Capacity];
+			}
+			m_NumLevels = level+1;
+		}
+		if (m_Sizes[level]+numValues>m_Levels[level].length) {
+			int length = Math.max(m_Sizes[level]+numValues, 2*m_Levels[level].length);
+			m_Levels[level] = Arrays.copyOf(m_Levels[level], length);
+			m_Weights[level] = Arrays.copyOf(m_Weights[level], length);
+		}
+		System.arraycopy(values, 0, m_Levels[level], m_Sizes[level], numValues);
+		System.arraycopy(weights, 0, m_Weights[level], m_Sizes[level], numValues);
+		m_Sizes[level] += numValues;
+	}
+
+	/**
+	 * Compacts the full levels, from the lowest one up.
+	 */
+	private void compact() {
+		for (int h=0;h<m_NumLevels;++h) {
+			if (m_Sizes[h]<m_Capacity) {
+				continue;
+			}
+			double[] level = m_Levels[h];
+			double[] weights = m_Weights[h];
+			int size = m_Sizes[h];
+			sort(level, weights, size);
+
+			// An odd value out stays in the level
+			int numPairs = size/2;
+			double[] promoted = new double[numPairs];
+			double[] promotedWeights = new double[numPairs];
+			int offset = m_Compactions[h]++ & 1;
+			for (int i=0;i<numPairs;++i) {
+				promoted[i] = level[2*i+offset];
+				promotedWeights[i] = weights[2*i]+weights[2*i+1];
+			}
+			if (size%2 != 0) {
+				level[0] = level[size-1];
+				weights[0] = weights[size-1];
+			}
+			m_Sizes[h] = size%2;
+			append(h+1, promoted, promotedWeights, numPairs);
+		}
+	}
+
+	/**
+	 * Sorts the first values and their weights by value (values that are
+	 * equal keep their order).
+	 */
+	private static void sort(double[] values, double[] weights, int numValues) {
+		double[] keys = Arrays.copyOf(values, numValues);
+		int[] order = Utils.stableSort(keys);
+		double[] sortedWeights = new double[numValues];
+		for (int i=0;i<numValues;++i) {
+			values[i] = keys[order[i]];
+			sortedWeights[i] = weights[order[i]];
+		}
+		System.arraycopy(sortedWeights, 0, weights, 0, numValues);
+	}
+}
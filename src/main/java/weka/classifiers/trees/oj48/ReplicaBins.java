@@ -0,0 +1,225 @@
+package weka.classifiers.trees.oj48;
+
+import java.util.Arrays;
+
+import weka.core.Instances;
+import weka.core.Utils;
+
+/**
+ * Quantized copy of the numeric attributes of a replicated training
+ * dataset, used by the histogram split search.
+ *
+ * Every numeric attribute is quantized once into at most a given number
+ * of bins, kept as a byte (up to 255 bins) or a short per original row
+ * of a {@link ReplicaColumns} store, as all the replicas of a row share
+ * its values. The bins of a replicated row are read through its original
+ * row. The bins are limited by the midpoints between consecutive
+ * distinct values, chosen so that each bin holds about the same number
+ * of original rows. Values that differ by less than 1e-5
+ * always share a bin (as they can't be split by C4.5). If an attribute
+ * has fewer distinct values than bins, every value has its own bin, so
+ * the candidate splits are the ones of the exact search (but the split
+ * points are the limits of the bins, not the midpoints of the values
+ * in the node).
+ *
+ * @author João Costa (ei09008@fe.up.pt)
+ * @version $Revision: 1 $
+ */
+public class ReplicaBins {
+
+	/** The column store */
+	private ReplicaColumns m_Columns;
+
+	/** Bin of each original row, per attribute (up to 255 bins) */
+	private byte[][] m_ByteBins;
+
+	/** Bin of each original row, per attribute (more than 255 bins) */
+	private short[][] m_ShortBins;
+
+	/** Upper limit of each bin apart from the last, per attribute
+	 * (null if the attribute is not quantized) */
+	private double[][] m_Limits;
+
+	/**
+	 * Quantizes the numeric attributes of the rows of the given store.
+	 *
+	 * @param columns the column store
+	 * @param header the header of the replicated data
+	 * @param numBins the maximum number of bins per attribute
+	 * (from 2 to 65535)
+	 */
+	public ReplicaBins(ReplicaColumns columns, Instances header, int numBins) {
+		if (numBins<2 || numBins>65535) {
+			throw new IllegalArgumentException("Number of bins must be between 2 and 65535!");
+		}
+		m_Columns = columns;
+
+		// The first row of each original row reads its values
+		int numRows = columns.numRows();
+		int numSourceRows = columns.numSourceRows();
+		int[] rows = new int[numRows];
+		for (int i=0;i<numRows;++i) {
+			rows[i] = i;
+		}
+		int[] sources = new int[numRows];
+		columns.gatherSources(rows, sources);
+		int[] firstRows = new int[numSourceRows];
+		Arrays.fill(firstRows, -1);
+		int numKnown = 0;
+		for (int i=0;i<numRows;++i) {
+			if (firstRows[sources[i]]<0) {
+				firstRows[sources[i]] = i;
+				numKnown++;
+			}
+		}
+		rows = new int[numKnown];
+		sources = new int[numKnown];
+		numKnown = 0;
+		for (int i=0;i<numSourceRows;++i) {
+			if (firstRows[i]>=0) {
+				rows[numKnown] = firstRows[i];
+				sources[numKnown++] = i;
+			}
+		}
+		firstRows = null;
+		double[] column = new double[rows.length];
+
+		m_ByteBins = new byte[header.numAttributes()][];
+		m_ShortBins = new short[header.numAttributes()][];
+		m_Limits = new double[header.numAttributes()][];
+		for (int j=0;j<header.numAttributes();++j) {
+			if (j==header.classIndex() || !header.attribute(j).isNumeric()) {
+				continue;
+			}
+			columns.gather(j, rows, column);
+			m_Limits[j] = limits(column, numBins);
+			if (m_Limits[j].length<255) {
+				m_ByteBins[j] = new byte[numSourceRows];
+			}
+			else {
+				m_ShortBins[j] = new short[numSourceRows];
+			}
+			for (int i=0;i<rows.length;++i) {
+				int bin = numBins(j);
+				if (!Utils.isMissingValue(column[i])) {
+					bin = binOf(m_Limits[j], column[i]);
+				}
+				if (m_ByteBins[j]!=null) {
+					m_ByteBins[j][sources[i]] = (byte)bin;
+				}
+				else {
+					m_ShortBins[j][sources[i]] = (short)bin;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the upper limits of the bins of the given values.
+	 */
+	private static double[] limits(double[] column, int numBins) {
+		double[] sorted = new double[column.length];
+		int numKnown = 0;
+		for (int i=0;i<column.length;++i) {
+			if (!Utils.isMissingValue(column[i])) {
+				sorted[numKnown++] = column[i];
+			}
+		}
+		Arrays.sort(sorted, 0, numKnown);
+
+		int numGroups = 1;
+		for (int i=1;i<numKnown;++i) {
+			if (sorted[i-1]+1e-5 < sorted[i]) {
+				numGroups++;
+			}
+		}
+		boolean exact = numGroups<=numBins;
+
+		double[] limits = new double[numBins-1];
+		int numLimits = 0;
+		int first = 0; // First row of the current bin
+		for (int i=1;i<numKnown && numLimits<limits.length;++i) {
+			if (sorted[i-1]+1e-5 < sorted[i] && (exact ||
+					(long)(i-first)*(numBins-numLimits) >= numKnown-first)) {
+				double limit = (sorted[i-1]+sorted[i])/2;
+
+				// In case we have a numerical precision problem we need to choose the
+				// smaller value
+				if (limit == sorted[i]) {
+					limit = sorted[i-1];
+				}
+				limits[numLimits++] = limit;
+				first = i;
+			}
+		}
+		return Arrays.copyOf(limits, numLimits);
+	}
+
+	/**
+	 * Returns the bin of the given value (the first limit that is not
+	 * smaller than it, or the last bin).
+	 */
+	static int binOf(double[] limits, double value) {
+		int low = 0;
+		int high = limits.length;
+		while (low<high) {
+			int middle = (low+high) >>> 1;
+			if (value<=limits[middle]) {
+				high = middle;
+			}
+			else {
+				low = middle+1;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Returns true if the given attribute is quantized.
+	 */
+	public final boolean isQuantized(int attIndex) {
+		return m_Limits[attIndex]!=null;
+	}
+
+	/**
+	 * Returns the number of bins of the given attribute. Missing values
+	 * are kept as this number.
+	 */
+	public final int numBins(int attIndex) {
+		return m_Limits[attIndex].length+1;
+	}
+
+	/**
+	 * Returns the split point between each bin of the given attribute
+	 * and the next one.
+	 * WARNING: it just returns a reference to the array.
+	 */
+	public final double[] limits(int attIndex) {
+		return m_Limits[attIndex];
+	}
+
+	/**
+	 * Copies the bins of the given attribute for the given rows.
+	 *
+	 * @param attIndex the (quantized) attribute
+	 * @param rows the rows to read
+	 * @param bins the array that receives the bins
+	 */
+	public final void gather(int attIndex, int[] rows, int[] bins) {
+
+		// The original rows are read into the bins first
+		m_Columns.gatherSources(rows, bins);
+		if (m_ByteBins[attIndex]!=null) {
+			byte[] values = m_ByteBins[attIndex];
+			for (int i=0;i<rows.length;++i) {
+				bins[i] = values[bins[i]] & 0xFF;
+			}
+		}
+		else {
+			short[] values = m_ShortBins[attIndex];
+			for (int i=0;i<rows.length;++i) {
+				bins[i] = values[bins[i]] & 0xFFFF;
+			}
+		}
+	}
+}
@@ -0,0 +1,143 @@
+package weka.classifiers.trees.oj48;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import weka.core.Instances;
+import weka.core.converters.AbstractFileLoader;
+import weka.core.converters.ConverterUtils;
+
+/**
+ * Writes replicated data to a binary file of column chunks, one chunk
+ * per batch (see StreamingReplicator).
+ *
+ * The file starts with the magic number, the version and the header of
+ * the replicated data (ARFF, UTF-8, preceded by its length in bytes).
+ * Each chunk has the number of original rows and of replicated rows, the
+ * values of each original attribute (one double per original row, one
+ * attribute after the other) and, for every replicated row, its original
+ * row in the chunk (int), replica (int), binary label (byte) and weight
+ * (double). The file ends with a chunk of -1 original rows. All values
+ * are big-endian.
+ *
+ * OJ48 can be trained from the file without loading it (see
+ * ChunkedReplicaColumns and OJ48.buildChunkedClassifier).
+ *
+ * @author João Costa (ei09008@fe.up.pt)
+ * @version $Revision: 1 $
+ */
+public class ReplicaChunkWriter {
+
+	/** Magic number of the files */
+	public static final int MAGIC = 0x4F4A3438;
+
+	/** Version of the file format */
+	public static final int VERSION = 1;
+
+	/** The output */
+	private DataOutputStream m_Out;
+
+	/**
+	 * Creates the file and writes the header of the replicated data.
+	 *
+	 * @param file the file to write
+	 * @param structure the structure of the original data (with class)
+	 * @exception IOException if the file can't be written
+	 */
+	public ReplicaChunkWriter(File file, Instances structure) throws IOException {
+		Instances header =
+				DataReplicator.replicateData(new Instances(structure, 0), 0, null);
+		byte[] headerBytes = header.toString().getBytes("UTF-8");
+
+		m_Out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+		m_Out.writeInt(MAGIC);
+		m_Out.writeInt(VERSION);
+		m_Out.writeInt(headerBytes.length);
+		m_Out.write(headerBytes);
+	}
+
+	/**
+	 * Writes a batch of replicated data as a chunk.
+	 *
+	 * @param batch the replicated data
+	 * @exception IOException if the chunk can't be written
+	 */
+	public void writeBatch(ReplicatedInstances batch) throws IOException {
+		Instances source = batch.sourceData();
+
+		m_Out.writeInt(source.numInstances());
+		m_Out.writeInt(batch.numInstances());
+		for (int j=0;j<source.numAttributes();++j) {
+			if (j!=source.classIndex()) {
+				for (int i=0;i<source.numInstances();++i) {
+					m_Out.writeDouble(source.instance(i).value(j));
+				}
+			}
+		}
+		for (int i=0;i<batch.numInstances();++i) {
+			ReplicaInstance instance = (ReplicaInstance)batch.instance(i);
+			m_Out.writeInt(batch.sourceRow(instance.row()));
+			m_Out.writeInt(instance.replica());
+			m_Out.writeByte((int)instance.classValue());
+			m_Out.writeDouble(instance.weight());
+		}
+	}
+
+	/**
+	 * Writes the end of the file and closes it.
+	 *
+	 * @exception IOException if the file can't be written
+	 */
+	public void close() throws IOException {
+		m_Out.writeInt(-1);
+		m_Out.close();
+	}
+
+	/**
+	 * Replicates an ARFF or CSV file into a file of column chunks. The
+	 * output file is deleted if it can't be written completely.
+	 *
+	 * @param args input file, output file, s value (default 0) and
+	 * number of original rows per chunk (default 10000)
+	 * @exception Exception if the file can't be read or written
+	 */
+	public static void main(String[] args) throws Exception {
+		if (args.length < 2) {
+			throw new IllegalArgumentException("Usage: ReplicaChunkWriter <input file> "
+					+ "<output file> [s value] [rows per chunk]");
+		}
+		int s = args.length > 2 ? Integer.parseInt(args[2]) : 0;
+		int batchSize = args.length > 3 ? Integer.parseInt(args[3]) : 10000;
+		File output = new File(args[1]);
+
+		AbstractFileLoader loader = ConverterUtils.getLoaderForFile(args[0]);
+		if (loader == null) {
+			throw new IllegalArgumentException("Unknown file type: " + args[0]);
+		}
+		loader.setFile(new File(args[0]));
+		StreamingReplicator replicator = new StreamingReplicator(loader, s, batchSize, 2);
+		try {
+			ReplicaChunkWriter writer = new ReplicaChunkWriter(output, replicator.structure());
+			boolean written = false;
+			try {
+				replicator.writeTo(writer);
+				writer.close();
+				written = true;
+			}
+			finally {
+				if (!written) {
+					try {
+						writer.m_Out.close();
+					} catch (IOException e) {} // Deleted anyway
+					output.delete();
+				}
+			}
+		}
+		finally {
+			replicator.close();
+		}
+	}
+}
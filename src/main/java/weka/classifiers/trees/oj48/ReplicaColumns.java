@@ -0,0 +1,116 @@
+package weka.classifiers.trees.oj48;
+
+import weka.core.DenseInstance;
+import weka.core.Instance;
+import weka.core.Instances;
+
+/**
+ * Column-major copy of a replicated training dataset.
+ *
+ * Every attribute apart from the class is kept as a column of doubles,
+ * together with the binary label and the replica of each row, so the
+ * split search can read primitive arrays instead of going through the
+ * instances. Rows are identified by {@link ReplicaInstance#row()},
+ * which is kept by the copies of the instances made while the tree is
+ * grown (the values of the instances must not be modified).
+ *
+ * The weights are not stored, as they change while the tree is grown
+ * (see ReplicaPartition).
+ *
+ * @author João Costa (ei09008@fe.up.pt)
+ * @version $Revision: 1 $
+ */
+public abstract class ReplicaColumns {
+
+	/**
+	 * Returns the number of rows.
+	 */
+	public abstract int numRows();
+
+	/**
+	 * Returns the number of original (non replicated) rows.
+	 */
+	public abstract int numSourceRows();
+
+	/**
+	 * Copies the original row of each of the given rows.
+	 *
+	 * @param rows the rows to read
+	 * @param sources the array that receives the original rows
+	 */
+	public abstract void gatherSources(int[] rows, int[] sources);
+
+	/**
+	 * Copies the values of the given attribute for the given rows.
+	 *
+	 * @param attIndex the attribute
+	 * @param rows the rows to read
+	 * @param column the array that receives the values
+	 */
+	public abstract void gather(int attIndex, int[] rows, double[] column);
+
+	/**
+	 * Returns the binary label of the given row.
+	 */
+	public abstract int label(int row);
+
+	/**
+	 * Returns the replica of the given row.
+	 */
+	public abstract int replica(int row);
+
+	/**
+	 * Returns a copy of the given row as an instance of the given header.
+	 *
+	 * @param row the row
+	 * @param header the header of the replicated data (with class)
+	 * @param weight the weight of the instance
+	 */
+	public final Instance instance(int row, Instances header, double weight) {
+		int[] rows = {row};
+		double[] value = new double[1];
+		double[] values = new double[header.numAttributes()];
+		for (int j=0;j<values.length;++j) {
+			gather(j, rows, value);
+			values[j] = value[0];
+		}
+		Instance instance = new DenseInstance(weight, values);
+		instance.setDataset(header);
+		return instance;
+	}
+
+	/**
+	 * Releases the resources of the store. It can't be used afterwards.
+	 */
+	public void close() {
+	}
+
+	/**
+	 * Returns the row of the given instance, or -1 if it is not
+	 * a row of this store.
+	 */
+	public final int rowOf(Instance instance) {
+		if (!(instance instanceof ReplicaInstance)) {
+			return -1;
+		}
+		int row = ((ReplicaInstance)instance).row();
+		if (row>=numRows()) {
+			return -1;
+		}
+		return row;
+	}
+
+	/**
+	 * Returns the number of rows of the given replicated data
+	 * (one more than the highest row of its instances).
+	 */
+	protected static int numRows(ReplicatedInstances data) {
+		int numRows = 0;
+		for (int i=0;i<data.numInstances();++i) {
+			if (data.instance(i) instanceof ReplicaInstance) {
+				numRows = Math.max(numRows, ((ReplicaInstance)data.instance(i)).row()+1);
+			}
+		}
+		return numRows;
+	}
+}
@@ -0,0 +1,81 @@
+package weka.classifiers.trees.oj48;
+
+import java.lang.ref.WeakReference;
+
+import weka.core.Instance;
+import weka.core.Instances;
+
+/**
+ * Reusable encoder of the replicas of a single (non replicated) instance,
+ * used when classifying.
+ *
+ * Instead of building a replicated dataset for every instance, the encoder
+ * keeps one {@link ReplicaInstance} that is moved to the instance and
+ * replica being evaluated, so encoding a replica allocates nothing. The
+ * replicated header is only rebuilt when the dataset of the encoded
+ * instances changes.
+ *
+ * Encoders are not thread safe, use {@link #threadEncoder()} to get the
+ * encoder of the current thread. The returned instance is only valid until
+ * the next call to {@link #encode(Instance, int)}.
+ *
+ * @author João Costa (ei09008@fe.up.pt)
+ * @version $Revision: 1 $
+ */
+public class ReplicaEncoder {
+
+	/** The encoder of each thread */
+	private static final ThreadLocal<ReplicaEncoder> THREAD_ENCODER =
+			new ThreadLocal<ReplicaEncoder>() {
+		@Override
+		protected ReplicaEncoder initialValue() {
+			return new ReplicaEncoder();
+		}
+	};
+
+	/** Dataset of the last encoded instance (not kept alive by the encoder) */
+	private WeakReference<Instances> m_SourceDataset =
+			new WeakReference<Instances>(null);
+
+	/** Header of the replicated data */
+	private Instances m_Header;
+
+	/** The reused replicated instance */
+	private ReplicaInstance m_Instance = new ReplicaInstance(null, 0, 1);
+
+	/**
+	 * Returns the encoder of the current thread.
+	 */
+	public static ReplicaEncoder threadEncoder() {
+		return THREAD_ENCODER.get();
+	}
+
+	/**
+	 * Returns the number of replicas of the given instance.
+	 *
+	 * @param instance the original instance
+	 */
+	public static int numReplicas(Instance instance) {
+		return instance.numClasses()-1;
+	}
+
+	/**
+	 * Encodes a replica of the given instance. The weight of the replica
+	 * is the weight of the original instance.
+	 *
+	 * @param instance the original instance (must have access to its dataset)
+	 * @param replica the replica index
+	 * @return the replicated instance (reused by the next call)
+	 */
+	public Instance encode(Instance instance, int replica) {
+		Instances dataset = instance.dataset();
+		if (m_Header == null || m_SourceDataset.get() != dataset) {
+			m_Header = new ReplicatedInstances(new Instances(dataset, 0), 0, null);
+			m_SourceDataset = new WeakReference<Instances>(dataset);
+			m_Instance.setDataset(m_Header);
+		}
+		m_Instance.reset(instance, replica);
+		m_Instance.setWeight(instance.weight());
+		return m_Instance;
+	}
+}
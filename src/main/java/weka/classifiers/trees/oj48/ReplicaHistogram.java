@@ -0,0 +1,167 @@
+package weka.classifiers.trees.oj48;
+
+/**
+ * Class histogram of a quantized attribute (see ReplicaBins) for every
+ * replica of a node: the weight of each binary label in each bin, and
+ * the number of instances in each bin.
+ *
+ * @author João Costa (ei09008@fe.up.pt)
+ * @version $Revision: 1 $
+ */
+public class ReplicaHistogram {
+
+	/** Number of bins (without missing values) */
+	private int m_NumBins;
+
+	/** Number of classes */
+	private int m_NumClasses;
+
+	/** Weight per replica, bin and class */
+	private double[] m_Weights;
+
+	/** Number of instances per replica and bin */
+	private int[] m_Counts;
+
+	/** Number of instances with a known value, per replica */
+	private int[] m_NumKnown;
+
+	/**
+	 * Creates the histogram of the given instances.
+	 *
+	 * @param numReplicas the number of replicas
+	 * @param numBins the number of bins (without missing values)
+	 * @param numClasses the number of classes
+	 * @param bins the bin of each instance
+	 * @param replicas the replica of each instance
+	 * @param labels the class of each instance
+	 * @param weights the weight of each instance
+	 */
+	public ReplicaHistogram(int numReplicas, int numBins, int numClasses,
+			int[] bins, int[] replicas, int[] labels, double[] weights) {
+		m_NumBins = numBins;
+		m_NumClasses = numClasses;
+		m_Weights = new double[numReplicas*numBins*numClasses];
+		m_Counts = new int[numReplicas*numBins];
+		m_NumKnown = new int[numReplicas];
+		for (int i=0;i<bins.length;++i) {
+			if (bins[i]<numBins) {
+				m_Weights[(replicas[i]*numBins+bins[i])*numClasses+labels[i]] += weights[i];
+				m_Counts[replicas[i]*numBins+bins[i]]++;
+				m_NumKnown[replicas[i]]++;
+			}
+		}
+	}
+
+	/**
+	 * Creates an empty histogram (see add).
+	 *
+	 * @param numReplicas the number of replicas
+	 * @param numBins the number of bins (without missing values)
+	 * @param numClasses the number of classes
+	 */
+	public ReplicaHistogram(int numReplicas, int numBins, int numClasses) {
+		m_NumBins = numBins;
+		m_NumClasses = numClasses;
+		m_Weights = new double[numReplicas*numBins*numClasses];
+		m_Counts = new int[numReplicas*numBins];
+		m_NumKnown = new int[numReplicas];
+	}
+
+	/**
+	 * Copy constructor.
+	 */
+	public ReplicaHistogram(ReplicaHistogram histogram) {
+		m_NumBins = histogram.m_NumBins;
+		m_NumClasses = histogram.m_NumClasses;
+		m_Weights = histogram.m_Weights.clone();
+		m_Counts = histogram.m_Counts.clone();
+		m_NumKnown = histogram.m_NumKnown.clone();
+	}
+
+	/**
+	 * Creates the difference of two histograms (e.g. of a node and of
+	 * all but one of its subsets). The weights of empty bins and negative
+	 * weights (rounding errors) are set to zero.
+	 */
+	public ReplicaHistogram(ReplicaHistogram histogram, ReplicaHistogram minus) {
+		m_NumBins = histogram.m_NumBins;
+		m_NumClasses = histogram.m_NumClasses;
+		m_Weights = new double[histogram.m_Weights.length];
+		m_Counts = new int[histogram.m_Counts.length];
+		m_NumKnown = new int[histogram.m_NumKnown.length];
+		for (int i=0;i<m_Counts.length;++i) {
+			m_Counts[i] = histogram.m_Counts[i]-minus.m_Counts[i];
+			if (m_Counts[i]>0) {
+				for (int j=i*m_NumClasses;j<(i+1)*m_NumClasses;++j) {
+					m_Weights[j] = Math.max(0, histogram.m_Weights[j]-minus.m_Weights[j]);
+				}
+			}
+		}
+		for (int i=0;i<m_NumKnown.length;++i) {
+			m_NumKnown[i] = histogram.m_NumKnown[i]-minus.m_NumKnown[i];
+		}
+	}
+
+	/**
+	 * Adds the given histogram to this one.
+	 */
+	public final void add(ReplicaHistogram histogram) {
+		for (int i=0;i<m_Weights.length;++i) {
+			m_Weights[i] += histogram.m_Weights[i];
+		}
+		for (int i=0;i<m_Counts.length;++i) {
+			m_Counts[i] += histogram.m_Counts[i];
+		}
+		for (int i=0;i<m_NumKnown.length;++i) {
+			m_NumKnown[i] += histogram.m_NumKnown[i];
+		}
+	}
+
+	/**
+	 * Adds an instance to the histogram (if its bin is not the one of
+	 * missing values).
+	 *
+	 * @param bin the bin of the instance
+	 * @param replica the replica of the instance
+	 * @param label the class of the instance
+	 * @param weight the weight of the instance
+	 */
+	public final void add(int bin, int replica, int label, double weight) {
+		if (bin<m_NumBins) {
+			m_Weights[(replica*m_NumBins+bin)*m_NumClasses+label] += weight;
+			m_Counts[replica*m_NumBins+bin]++;
+			m_NumKnown[replica]++;
+		}
+	}
+
+	/**
+	 * Returns the number of bins (without missing values).
+	 */
+	public final int numBins() {
+		return m_NumBins;
+	}
+
+	/**
+	 * Returns the weight of the given class in the given bin of the
+	 * given replica.
+	 */
+	public final double weight(int replica, int bin, int classIndex) {
+		return m_Weights[(replica*m_NumBins+bin)*m_NumClasses+classIndex];
+	}
+
+	/**
+	 * Returns the number of instances in the given bin of the given
+	 * replica.
+	 */
+	public final int count(int replica, int bin) {
+		return m_Counts[replica*m_NumBins+bin];
+	}
+
+	/**
+	 * Returns the number of instances of the given replica with
+	 * a known value.
+	 */
+	public final int numKnown(int replica) {
+		return m_NumKnown[replica];
+	}
+}
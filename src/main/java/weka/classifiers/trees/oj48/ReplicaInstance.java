@@ -0,0 +1,232 @@
+package weka.classifiers.trees.oj48;
+
+import weka.core.Instance;
+import weka.core.RevisionUtils;
+import weka.core.SparseInstance;
+
+/**
+ * Instance of a replicated dataset that is backed by a row of the
+ * original (non replicated) data.
+ *
+ * The attribute values, the binary label and the replica indicators are
+ * derived from the original row when they are read. The values are only
+ * copied if the instance is modified (e.g. an attribute is deleted).
+ *
+ * The replica is fixed when the instance is created, so it can be read
+ * in constant time (see DataReplicator.getInstanceReplica) even after
+ * the values have been copied. Only a {@link ReplicaEncoder} moves an
+ * instance to another row or replica.
+ *
+ * If the original row is a SparseInstance, the instance is sparse too:
+ * its values are the non-zero values of the original row (apart from the
+ * class), the binary label and the indicator of its replica (unless it is
+ * the first replica, which has no indicator).
+ *
+ * @author João Costa (ei09008@fe.up.pt)
+ * @version $Revision: 1 $
+ */
+public class ReplicaInstance extends DerivedInstance {
+
+	/** for serialization */
+	private static final long serialVersionUID = -2284017826469035720L;
+
+	/** The replica of this instance */
+	protected int m_Replica;
+
+	/** The row of this instance in the replicated data (-1 if unknown) */
+	protected int m_Row;
+
+	/**
+	 * Creates a view of the given row for the given replica.
+	 *
+	 * @param source the original row (must have access to its dataset)
+	 * @param replica the replica index
+	 * @param weight the weight of the replicated instance
+	 */
+	public ReplicaInstance(Instance source, int replica, double weight) {
+		this(source, replica, weight, -1);
+	}
+
+	/**
+	 * Creates a view of the given row for the given replica, which is
+	 * the given row of the replicated data.
+	 *
+	 * @param source the original row (must have access to its dataset)
+	 * @param replica the replica index
+	 * @param weight the weight of the replicated instance
+	 * @param row the row of the instance in the replicated data
+	 */
+	public ReplicaInstance(Instance source, int replica, double weight, int row) {
+		super(source, weight);
+		m_Replica = replica;
+		m_Row = row;
+	}
+
+	/**
+	 * Copy constructor. The dataset is not copied.
+	 *
+	 * @param instance the instance to copy
+	 */
+	public ReplicaInstance(ReplicaInstance instance) {
+		super(instance);
+		m_Replica = instance.m_Replica;
+		m_Row = instance.m_Row;
+	}
+
+	/**
+	 * Makes this instance a view of another row and replica. Any copied
+	 * values are dropped. Only meant for reusable instances that are not
+	 * part of a dataset (see ReplicaEncoder).
+	 *
+	 * @param source the original row
+	 * @param replica the replica index
+	 */
+	final void reset(Instance source, int replica) {
+		m_Source = source;
+		m_Replica = replica;
+		m_Row = -1;
+		m_AttValues = null;
+	}
+
+	/**
+	 * Returns the replica of this instance.
+	 */
+	public final int replica() {
+		return m_Replica;
+	}
+
+	/**
+	 * Returns the row of this instance in the replicated data it was
+	 * created for, or -1 if it is unknown. Copies keep the row.
+	 */
+	public final int row() {
+		return m_Row;
+	}
+
+	/**
+	 * Returns the binary label of this instance, which is 0 if the
+	 * original class is lower or equal to the replica.
+	 */
+	public final double binaryLabel() {
+		if (m_Source.classValue()<=m_Replica) {
+			return 0;
+		}
+		return 1;
+	}
+
+	/**
+	 * Produces a shallow copy of this instance.
+	 */
+	public Object copy() {
+		ReplicaInstance result = new ReplicaInstance(this);
+		result.m_Dataset = m_Dataset;
+		return result;
+	}
+
+	public int index(int position) {
+		if (!isSparse()) {
+			return position;
+		}
+		int sourceValues = numSourceValues();
+		if (position<sourceValues) {
+			int index = m_Source.index(sourcePosition(position));
+			return index<m_Source.classIndex()?index:index-1;
+		}
+		int classIndex = m_Source.numAttributes()-1;
+		if (position==sourceValues) {
+			return classIndex;
+		}
+		return classIndex+m_Replica;
+	}
+
+	protected int numDerivedAttributes() {
+		// Original attributes (binary label replaces the class)
+		// and one indicator per replica apart from the first
+		return m_Source.numAttributes()+m_Source.numClasses()-2;
+	}
+
+	public int numValues() {
+		if (!isSparse()) {
+			return numAttributes();
+		}
+		return numSourceValues()+(m_Replica>0?2:1);
+	}
+
+	protected double derivedValue(int attIndex) {
+		int classIndex = m_Source.numAttributes()-1;
+		if (attIndex<classIndex) {
+			int sourceClassIndex = m_Source.classIndex();
+			return m_Source.value(attIndex<sourceClassIndex?attIndex:attIndex+1);
+		}
+		if (attIndex==classIndex) {
+			return binaryLabel();
+		}
+		if (attIndex-classIndex==m_Replica) {
+			return 1;
+		}
+		return 0;
+	}
+
+	public double valueSparse(int indexOfIndex) {
+		if (!isSparse()) {
+			return value(indexOfIndex);
+		}
+		int sourceValues = numSourceValues();
+		if (indexOfIndex<sourceValues) {
+			return m_Source.valueSparse(sourcePosition(indexOfIndex));
+		}
+		if (indexOfIndex==sourceValues) {
+			return binaryLabel();
+		}
+		return 1;
+	}
+
+	/**
+	 * Returns true if the values are derived from a sparse original row.
+	 */
+	private boolean isSparse() {
+		return m_AttValues == null && m_Source instanceof SparseInstance;
+	}
+
+	/**
+	 * Returns the position of the class among the values of the
+	 * (sparse) original row, or -1 if it is not stored.
+	 */
+	private int sourceClassPosition() {
+		int classIndex = m_Source.classIndex();
+		int position = ((SparseInstance)m_Source).locateIndex(classIndex);
+		if (position>=0 && m_Source.index(position)==classIndex) {
+			return position;
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the number of values of the (sparse) original row,
+	 * apart from the class.
+	 */
+	private int numSourceValues() {
+		return m_Source.numValues()-(sourceClassPosition()<0?0:1);
+	}
+
+	/**
+	 * Returns the position in the (sparse) original row of the given
+	 * position, skipping the class.
+	 */
+	private int sourcePosition(int position) {
+		int classPosition = sourceClassPosition();
+		if (classPosition>=0 && position>=classPosition) {
+			return position+1;
+		}
+		return position;
+	}
+
+	/**
+	 * Returns the revision string.
+	 *
+	 * @return		the revision
+	 */
+	public String getRevision() {
+		return RevisionUtils.extract("$Revision: 1 $");
+	}
+}
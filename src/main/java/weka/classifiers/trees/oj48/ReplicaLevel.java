@@ -0,0 +1,127 @@
+package weka.classifiers.trees.oj48;
+
+import java.util.Arrays;
+
+/**
+ * The partitions of the open nodes of a level of a tree that is grown
+ * level by level (see ClassifierTree.buildLevels), whose values are read
+ * from their column store in one pass over the rows of the whole level
+ * instead of one pass per node.
+ *
+ * The rows of the nodes are sorted once for the level, so the values of
+ * an attribute are gathered in the order of the store (e.g. one
+ * sequential scan of the chunks of a ChunkedReplicaColumns store), and
+ * then moved to the partitions of the nodes, which hand them to the
+ * candidate splits of the attribute (see ReplicaPartition.column).
+ *
+ * @author João Costa (ei09008@fe.up.pt)
+ * @version $Revision: 1 $
+ */
+public class ReplicaLevel {
+
+	/** The partition of each node (null for the nodes that are not read) */
+	private ReplicaPartition[] m_Partitions;
+
+	/** The column store of the partitions */
+	private ReplicaColumns m_Columns;
+
+	/** First position of each partition in the level, followed by the
+	 *  number of rows of the level */
+	private int[] m_Starts;
+
+	/** The rows of the level, in increasing order */
+	private int[] m_Rows;
+
+	/** Position of the row of each position of the level in m_Rows */
+	private int[] m_Positions;
+
+	/**
+	 * Creates the level of the given partitions.
+	 */
+	private ReplicaLevel(ReplicaPartition[] partitions, ReplicaColumns columns) {
+		m_Partitions = partitions;
+		m_Columns = columns;
+		m_Starts = new int[partitions.length+1];
+		for (int p=0;p<partitions.length;++p) {
+			m_Starts[p+1] = m_Starts[p]
+					+(partitions[p] == null ? 0 : partitions[p].numInstances());
+		}
+
+		long[] keys = new long[m_Starts[partitions.length]];
+		for (int p=0;p<partitions.length;++p) {
+			if (partitions[p] != null) {
+				int[] rows = partitions[p].rows().rows();
+				for (int i=0;i<rows.length;++i) {
+					keys[m_Starts[p]+i] = ((long)rows[i] << 32) | (m_Starts[p]+i);
+				}
+			}
+		}
+		Arrays.sort(keys);
+		m_Rows = new int[keys.length];
+		m_Positions = new int[keys.length];
+		for (int i=0;i<keys.length;++i) {
+			m_Rows[i] = (int)(keys[i] >>> 32);
+			m_Positions[(int)keys[i]] = i;
+		}
+	}
+
+	/**
+	 * Returns the level of the given partitions, or null if they are not
+	 * all partitions of rows of the same column store.
+	 *
+	 * @param partitions the partition of each node (null for the nodes
+	 * that are not read)
+	 */
+	public static ReplicaLevel of(ReplicaPartition[] partitions) {
+		ReplicaColumns columns = null;
+		for (int p=0;p<partitions.length;++p) {
+			if (partitions[p] == null) {
+				continue;
+			}
+			if (partitions[p].rows() == null || partitions[p].columns() == null
+					|| (columns != null && partitions[p].columns() != columns)) {
+				return null;
+			}
+			columns = partitions[p].columns();
+		}
+		if (columns == null) {
+			return null;
+		}
+		return new ReplicaLevel(partitions, columns);
+	}
+
+	/**
+	 * Reads the values of the given attribute for the given nodes, in one
+	 * pass over the rows of the level, and hands them to their partitions
+	 * (see ReplicaPartition.column).
+	 *
+	 * @param attIndex the attribute
+	 * @param nodes whether each node is read
+	 */
+	public final void read(int attIndex, boolean[] nodes) {
+		double[] values = new double[m_Rows.length];
+		m_Columns.gather(attIndex, m_Rows, values);
+		for (int p=0;p<m_Partitions.length;++p) {
+			if (!nodes[p] || m_Partitions[p] == null) {
+				continue;
+			}
+			double[] column = new double[m_Starts[p+1]-m_Starts[p]];
+			for (int i=0;i<column.length;++i) {
+				column[i] = values[m_Positions[m_Starts[p]+i]];
+			}
+			m_Partitions[p].readColumn(attIndex, column);
+		}
+	}
+
+	/**
+	 * Drops the values of the given attribute that the partitions didn't
+	 * use.
+	 */
+	public final void clear(int attIndex) {
+		for (int p=0;p<m_Partitions.length;++p) {
+			if (m_Partitions[p] != null) {
+				m_Partitions[p].readColumn(attIndex, null);
+			}
+		}
+	}
+}
@@ -0,0 +1,952 @@
+package weka.classifiers.trees.oj48;
+
+import java.util.Arrays;
+
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.Utils;
+
+/**
+ * Partition of a replicated dataset into its replicas.
+ *
+ * Each replica is represented by the indices of its instances in the
+ * replicated data, so finding the replicas is a single pass over the data
+ * and no instance is copied.
+ *
+ * The weights (as they were when the partition was created) and the binary
+ * labels of the instances are kept in arrays, and attribute values are
+ * gathered into arrays on request, so that the split search runs over
+ * primitive arrays. If the data are rows of a
+ * {@link ReplicaColumns} store, labels, replicas and values are read
+ * from the store, and the values of the partitions of a level of a tree
+ * can be read for all of them in one pass (see {@link ReplicaLevel}).
+ *
+ * The class distributions of the replicas and the sum of the weights are
+ * only computed once per partition, and are shared by the selection of
+ * the split of a node, its candidate splits and the tree.
+ *
+ * The order of the instances on a numeric attribute is found by sorting
+ * the first time it is requested, and is kept by the partitions of the
+ * subsets of a split (see split), so along a path of the tree every
+ * attribute is only sorted once. The orders are kept in arrays that are
+ * shared by the partitions of a tree, each one using a range of them
+ * (see Order). A split moves the order of every sorted attribute to the
+ * ranges of the subsets in one stable pass, in place if every instance
+ * goes to a single subset.
+ *
+ * The partitions of the subsets of a split only read the weights, labels
+ * and replicas of their instances when they are first used, i.e. when
+ * their node is built, and a partition drops them once it is split (see
+ * release). So while a tree is grown from the rows of a column store,
+ * only the nodes that are being built hold arrays of their instances;
+ * the others only hold their ranges of the rows and of the order.
+ *
+ * If the partition is created from the rows of a node ({@link ReplicaRows}),
+ * the subsets of a split are partitioned in place from the values of the
+ * store, without copying the instances (see split(ClassifierSplitModel)).
+ *
+ * If the numeric attributes are quantized ({@link ReplicaBins}), the
+ * class histograms of the replicas are built on request instead. When
+ * every instance goes to a single subset of a split, the histogram of
+ * the largest subset is the histogram of the data minus the ones of the
+ * other subsets. The numeric splits of large nodes can also be searched
+ * from histograms on split points proposed by a quantile sketch of the
+ * node (see sketchLimits).
+ *
+ * @author João Costa (ei09008@fe.up.pt)
+ * @version $Revision: 1 $
+ */
+public class ReplicaPartition {
+
+	/**
+	 * Order of the instances of partitions on the numeric attributes,
+	 * shared by a partition and the partitions of the subsets of its
+	 * splits. Every partition has a range of the arrays, with the indices
+	 * of its instances sorted on each attribute. The array of an attribute
+	 * is only created when some partition is sorted on it.
+	 */
+	private static final class Order {
+
+		/** Number of positions of the arrays */
+		private final int m_Length;
+
+		/** The array of each attribute (null if not created yet) */
+		private final int[][] m_Sorted;
+
+		/**
+		 * Creates the order of partitions with the given total number of
+		 * instances.
+		 */
+		Order(int length, int numAttributes) {
+			m_Length = length;
+			m_Sorted = new int[numAttributes][];
+		}
+
+		/**
+		 * Returns the array of the given attribute, which is created the
+		 * first time (by any of the partitions, which can be built in
+		 * parallel).
+		 */
+		synchronized int[] sorted(int attIndex) {
+			if (m_Sorted[attIndex] == null) {
+				m_Sorted[attIndex] = new int[m_Length];
+			}
+			return m_Sorted[attIndex];
+		}
+	}
+
+	/** Number of original rows of a block of the quantile sketches (see
+	 *  sketchLimits) */
+	private static final int SKETCH_BLOCK = 1 << 16;
+
+	/** Capacity of a quantile sketch per requested split point */
+	private static final int SKETCH_CAPACITY = 8;
+
+	/** The partitioned data (only its header if partitioned from rows) */
+	private Instances m_Data;
+
+	/** Number of instances */
+	private int m_NumInstances;
+
+	/** True if the arrays of the instances were read (see load) */
+	private volatile boolean m_Loaded;
+
+	/** True if the arrays of the instances were dropped (see release) */
+	private boolean m_Released;
+
+	/** The rows of the node, or null if partitioned from the data */
+	private ReplicaRows m_RowRange;
+
+	/** Indices of the instances of each replica (in data order) */
+	private int[][] m_Indices;
+
+	/** The column store, or null if the data are not rows of a store */
+	private ReplicaColumns m_Columns;
+
+	/** Row of each instance in the column store */
+	private int[] m_Rows;
+
+	/** Weight of each instance */
+	private double[] m_Weights;
+
+	/** Binary label of each instance */
+	private int[] m_Labels;
+
+	/** Replica of each instance */
+	private int[] m_ReplicaOf;
+
+	/** Sum of the weights of the instances */
+	private double m_SumOfWeights;
+
+	/** Class distribution of each replica (null if not computed yet) */
+	private Distribution[] m_Distributions;
+
+	/** The order of the instances, shared with other partitions */
+	private Order m_Order;
+
+	/** First position of the range of the order of this partition */
+	private int m_OrderStart;
+
+	/** True for the attributes whose order is known in the range */
+	private boolean[] m_Sorted;
+
+	/** The quantized attributes, or null if the data are not rows of a store */
+	private ReplicaBins m_Bins;
+
+	/** Histogram of each attribute (null if not built yet) */
+	private ReplicaHistogram[] m_Histograms;
+
+	/** The original row (high 32 bits) and the position of every instance,
+	 *  in the order of the original rows (null if not found yet) */
+	private long[] m_SourceOrder;
+
+	/** Values of each attribute read by the level of the partition and not
+	 *  used yet (see ReplicaLevel), or null if none was read */
+	private double[][] m_ReadColumns;
+
+	/**
+	 * Partitions the given replicated data.
+	 *
+	 * @param data the replicated data
+	 */
+	public ReplicaPartition(Instances data) {
+		this(data, null);
+	}
+
+	/**
+	 * Partitions the given replicated data, reading it from a column
+	 * store if all instances are rows of the store.
+	 *
+	 * @param data the replicated data
+	 * @param columns the column store (can be null)
+	 */
+	public ReplicaPartition(Instances data, ReplicaColumns columns) {
+		this(data, columns, null);
+	}
+
+	/**
+	 * Partitions the given replicated data, reading it from a column
+	 * store and its quantized attributes if all instances are rows of
+	 * the store.
+	 *
+	 * @param data the replicated data
+	 * @param columns the column store (can be null)
+	 * @param bins the quantized attributes of the store (can be null)
+	 */
+	public ReplicaPartition(Instances data, ReplicaColumns columns, ReplicaBins bins) {
+		this(data, null, columns, bins);
+	}
+
+	/**
+	 * Partitions the given rows of a node, which are split in place
+	 * (see split(ClassifierSplitModel)).
+	 *
+	 * @param rows the rows of the node
+	 * @param columns the column store of the rows
+	 * @param bins the quantized attributes of the store (can be null)
+	 */
+	public ReplicaPartition(ReplicaRows rows, ReplicaColumns columns, ReplicaBins bins) {
+		this(rows.header(), rows, columns, bins);
+	}
+
+	/**
+	 * Creates the partition of the given data or rows, which is loaded
+	 * when it is first used (see load).
+	 */
+	private ReplicaPartition(Instances data, ReplicaRows rows, ReplicaColumns columns,
+			ReplicaBins bins) {
+		m_Data = data;
+		m_RowRange = rows;
+		m_Columns = columns;
+		m_Bins = bins;
+		m_NumInstances = rows != null ? rows.numRows() : data.numInstances();
+		m_Order = new Order(m_NumInstances, data.numAttributes());
+		m_Sorted = new boolean[data.numAttributes()];
+		m_Histograms = new ReplicaHistogram[data.numAttributes()];
+	}
+
+	/**
+	 * Reads the weights, the labels and the replicas of the instances,
+	 * and finds the instances of each replica and the sum of the weights.
+	 * It is done the first time the arrays are used (possibly by the
+	 * candidate splits of the node in parallel).
+	 */
+	private void load() {
+		if (m_Loaded) {
+			return;
+		}
+		synchronized (this) {
+			if (m_Loaded) {
+				return;
+			}
+			if (m_Released) {
+				throw new IllegalStateException("The partition was already split!");
+			}
+			if (m_RowRange != null) {
+				m_Rows = m_RowRange.rows();
+				m_Weights = m_RowRange.weights();
+			}
+			else {
+				m_Rows = rows(m_Data, m_Columns);
+				if (m_Rows == null) {
+					m_Columns = null;
+					m_Bins = null;
+				}
+				m_Weights = new double[m_NumInstances];
+				for (int i=0;i<m_Weights.length;++i) {
+					m_Weights[i] = m_Data.instance(i).weight();
+				}
+			}
+
+			m_ReplicaOf = new int[m_NumInstances];
+			m_Labels = new int[m_NumInstances];
+			for (int i=0;i<m_ReplicaOf.length;++i) {
+				if (m_Columns != null) {
+					m_ReplicaOf[i] = m_Columns.replica(m_Rows[i]);
+					m_Labels[i] = m_Columns.label(m_Rows[i]);
+				}
+				else {
+					Instance instance = m_Data.instance(i);
+					m_ReplicaOf[i] = DataReplicator.getInstanceReplica(instance);
+					m_Labels[i] = (int)instance.classValue();
+				}
+			}
+			index();
+			m_Loaded = true;
+		}
+	}
+
+	/**
+	 * Drops the arrays of the instances once the partition is split. The
+	 * number of instances, the sum of the weights and the distributions
+	 * are kept; anything else can't be used afterwards.
+	 */
+	private synchronized void release() {
+		m_Released = true;
+		m_Loaded = false;
+		m_Rows = null;
+		m_Weights = null;
+		m_Labels = null;
+		m_ReplicaOf = null;
+		m_Indices = null;
+		m_Histograms = null;
+		m_SourceOrder = null;
+		m_ReadColumns = null;
+	}
+
+	/**
+	 * Finds the instances of each replica and the sum of the weights.
+	 */
+	private void index() {
+		int numReplicas = DataReplicator.getNumReplicas(m_Data);
+		int[] replicaOf = m_ReplicaOf;
+		int[] counts = new int[numReplicas];
+		for (int i=0;i<replicaOf.length;++i) {
+			m_SumOfWeights += m_Weights[i];
+			counts[replicaOf[i]]++;
+		}
+
+		m_Indices = new int[numReplicas][];
+		for (int i=0;i<numReplicas;++i) {
+			m_Indices[i] = new int[counts[i]];
+			counts[i] = 0;
+		}
+		for (int i=0;i<replicaOf.length;++i) {
+			m_Indices[replicaOf[i]][counts[replicaOf[i]]++] = i;
+		}
+	}
+
+	/**
+	 * Returns the rows of the given data in the column store, or null
+	 * if there is no store or some instance is not a row of the store.
+	 */
+	private static int[] rows(Instances data, ReplicaColumns columns) {
+		if (columns == null) {
+			return null;
+		}
+		int[] rows = new int[data.numInstances()];
+		for (int i=0;i<rows.length;++i) {
+			rows[i] = columns.rowOf(data.instance(i));
+			if (rows[i]<0) {
+				return null;
+			}
+		}
+		return rows;
+	}
+
+	/**
+	 * Returns the partitioned data.
+	 */
+	public final Instances data() {
+		return m_Data;
+	}
+
+	/**
+	 * Returns the rows of the node, or null if the partition was created
+	 * from the data.
+	 */
+	public final ReplicaRows rows() {
+		return m_RowRange;
+	}
+
+	/**
+	 * Returns the number of instances.
+	 */
+	public final int numInstances() {
+		return m_NumInstances;
+	}
+
+	/**
+	 * Returns the number of replicas.
+	 */
+	public final int numReplicas() {
+		load();
+		return m_Indices.length;
+	}
+
+	/**
+	 * Returns the indices of the instances of the given replica.
+	 * WARNING: it just returns a reference to the array.
+	 */
+	public final int[] indices(int replica) {
+		load();
+		return m_Indices[replica];
+	}
+
+	/**
+	 * Returns the number of instances in the given replica.
+	 */
+	public final int numInstances(int replica) {
+		load();
+		return m_Indices[replica].length;
+	}
+
+	/**
+	 * Returns the weight of every instance when the partition was created.
+	 * WARNING: it just returns a reference to the array.
+	 */
+	public final double[] weights() {
+		load();
+		return m_Weights;
+	}
+
+	/**
+	 * Returns the binary label of every instance.
+	 * WARNING: it just returns a reference to the array.
+	 */
+	public final int[] labels() {
+		load();
+		return m_Labels;
+	}
+
+	/**
+	 * Returns the replica of every instance.
+	 * WARNING: it just returns a reference to the array.
+	 */
+	public final int[] replicaOf() {
+		load();
+		return m_ReplicaOf;
+	}
+
+	/**
+	 * Returns the values of the given attribute for every instance.
+	 *
+	 * @param attIndex the attribute
+	 */
+	public final double[] column(int attIndex) {
+		load();
+		double[] column = takeColumn(attIndex);
+		if (column != null) {
+			return column;
+		}
+		column = new double[m_NumInstances];
+		if (m_Columns != null) {
+			m_Columns.gather(attIndex, m_Rows, column);
+		}
+		else {
+			for (int i=0;i<column.length;++i) {
+				column[i] = m_Data.instance(i).value(attIndex);
+			}
+		}
+		return column;
+	}
+
+	/**
+	 * Returns the column store, or null if the data are not rows of a
+	 * store.
+	 */
+	final ReplicaColumns columns() {
+		return m_Columns;
+	}
+
+	/**
+	 * Keeps the values of the given attribute read by the level of the
+	 * partition (see ReplicaLevel), which are returned by the next call
+	 * of column instead of reading the store again.
+	 *
+	 * @param attIndex the attribute
+	 * @param column the values of the attribute (null to drop them)
+	 */
+	final synchronized void readColumn(int attIndex, double[] column) {
+		if (m_ReadColumns == null) {
+			if (column == null) {
+				return;
+			}
+			m_ReadColumns = new double[m_Data.numAttributes()][];
+		}
+		m_ReadColumns[attIndex] = column;
+	}
+
+	/**
+	 * Returns the values of the given attribute read by the level of the
+	 * partition, which are handed over, or null if they were not read.
+	 */
+	private synchronized double[] takeColumn(int attIndex) {
+		if (m_ReadColumns == null) {
+			return null;
+		}
+		double[] column = m_ReadColumns[attIndex];
+		m_ReadColumns[attIndex] = null;
+		return column;
+	}
+
+	/**
+	 * Returns the sum of the current weights of the instances in the
+	 * given replica.
+	 */
+	public final double sumOfWeights(int replica) {
+		load();
+		double sum = 0;
+		int[] indices = m_Indices[replica];
+		for (int i=0;i<indices.length;++i) {
+			sum += m_RowRange != null ? m_Weights[indices[i]] :
+				m_Data.instance(indices[i]).weight();
+		}
+		return sum;
+	}
+
+	/**
+	 * Returns the sum of the weights of the instances when the partition
+	 * was created.
+	 */
+	public final double sumOfWeights() {
+		if (!m_Released) {
+			load();
+		}
+		return m_SumOfWeights;
+	}
+
+	/**
+	 * Returns the class distribution (one bag) of the given replica.
+	 * WARNING: it just returns a reference to the distribution.
+	 *
+	 * @exception Exception if something goes wrong
+	 */
+	public final Distribution distribution(int replica) throws Exception {
+		return distributions()[replica];
+	}
+
+	/**
+	 * Returns the class distribution (one bag) of every replica. The
+	 * distributions are only computed the first time.
+	 * WARNING: it just returns a reference to the array.
+	 *
+	 * @exception Exception if something goes wrong
+	 */
+	public final Distribution[] distributions() throws Exception {
+		if (m_Distributions == null) {
+			load();
+			Distribution[] results = new Distribution[m_Indices.length];
+			for (int i=0;i<m_Indices.length;++i) {
+				results[i] = new Distribution(m_Data.numClasses(),m_Labels,m_Weights,
+						m_Indices[i]);
+			}
+			m_Distributions = results;
+		}
+		return m_Distributions;
+	}
+
+	/**
+	 * Returns the indices of the instances sorted by a numeric attribute,
+	 * with missing values last, in a new array. The instances are only
+	 * sorted the first time, or if the order was not kept from the
+	 * partition of the parent.
+	 *
+	 * @param attIndex the (numeric) attribute
+	 * @param column the values of the attribute (see column)
+	 */
+	public final int[] sortedIndices(int attIndex, double[] column) {
+		if (m_Sorted[attIndex]) {
+			return Arrays.copyOfRange(m_Order.sorted(attIndex), m_OrderStart,
+					m_OrderStart+m_NumInstances);
+		}
+		double[] vals = new double[column.length];
+		for (int i=0;i<vals.length;++i) {
+			if (Utils.isMissingValue(column[i])) {
+				vals[i] = Double.MAX_VALUE;
+			}
+			else {
+				vals[i] = column[i];
+			}
+		}
+		int[] sorted = Utils.sortWithNoMissingValues(vals);
+		System.arraycopy(sorted, 0, m_Order.sorted(attIndex), m_OrderStart, sorted.length);
+		m_Sorted[attIndex] = true;
+		return sorted;
+	}
+
+	/**
+	 * Returns true if the given attribute is quantized.
+	 */
+	public final boolean isQuantized(int attIndex) {
+		load();
+		return m_Bins != null && m_Bins.isQuantized(attIndex);
+	}
+
+	/**
+	 * Returns the split point between each bin of a quantized attribute
+	 * and the next one.
+	 * WARNING: it just returns a reference to the array.
+	 */
+	public final double[] limits(int attIndex) {
+		load();
+		return m_Bins.limits(attIndex);
+	}
+
+	/**
+	 * Returns the class histogram of every replica on a quantized
+	 * attribute. It is only built the first time, or if it was not
+	 * found from the partition of the parent.
+	 *
+	 * @param attIndex the (quantized) attribute
+	 */
+	public final ReplicaHistogram histogram(int attIndex) {
+		load();
+		if (m_Histograms[attIndex] == null) {
+			int[] bins = new int[m_Rows.length];
+			m_Bins.gather(attIndex, m_Rows, bins);
+			m_Histograms[attIndex] = new ReplicaHistogram(m_Indices.length,
+					m_Bins.numBins(attIndex), m_Data.numClasses(), bins, m_ReplicaOf,
+					m_Labels, m_Weights);
+		}
+		return m_Histograms[attIndex];
+	}
+
+	/**
+	 * Returns about the given number of split points of a numeric
+	 * attribute, at equally spaced quantiles of its known values in the
+	 * partition weighted by the weights of the instances, from a quantile
+	 * sketch (see QuantileSketch). If the data are rows of a column store,
+	 * the values are sketched in the order of the original rows, each one
+	 * once with the weight of all the replicas of its row in the
+	 * partition, in blocks of original rows whose sketches are merged in
+	 * order. So the split points don't depend on the order of the rows
+	 * of the store (e.g. on the chunks of a ChunkedReplicaColumns store).
+	 *
+	 * @param column the values of the attribute, which must be an
+	 * attribute of the original data (see column)
+	 * @param numCuts the number of split points
+	 * @return the split points, in increasing order
+	 */
+	public final double[] sketchLimits(double[] column, int numCuts) {
+		load();
+		long[] order = sourceOrder();
+		QuantileSketch sketch = new QuantileSketch(SKETCH_CAPACITY*numCuts);
+		QuantileSketch block = new QuantileSketch(SKETCH_CAPACITY*numCuts);
+		int numSources = 0;
+		for (int k=0;k<column.length;) {
+
+			// The replicas of an original row share its value
+			int i = order == null ? k : (int)order[k];
+			double weight = m_Weights[i];
+			int end = k+1;
+			if (order != null) {
+				for (;end<order.length && (order[end]>>>32)==(order[k]>>>32);++end) {
+					weight += m_Weights[(int)order[end]];
+				}
+			}
+			if (!Utils.isMissingValue(column[i])) {
+				block.add(column[i], weight);
+			}
+			k = end;
+			if (++numSources==SKETCH_BLOCK) {
+				sketch.merge(block);
+				block = new QuantileSketch(SKETCH_CAPACITY*numCuts);
+				numSources = 0;
+			}
+		}
+		sketch.merge(block);
+		return sketch.quantiles(numCuts);
+	}
+
+	/**
+	 * Returns the original row (high 32 bits) and the position of every
+	 * instance, in the order of the original rows and then of the
+	 * replicas, or null if the data are not rows of a column store. It
+	 * is only found the first time.
+	 */
+	private synchronized long[] sourceOrder() {
+		if (m_SourceOrder == null && m_Columns != null) {
+			int[] sources = new int[m_Rows.length];
+			m_Columns.gatherSources(m_Rows, sources);
+			long[] order = new long[sources.length];
+			for (int i=0;i<order.length;++i) {
+				order[i] = ((long)sources[i] << 32) | i;
+			}
+			Arrays.sort(order);
+
+			// Sort the instances of every original row by replica
+			for (int i=1;i<order.length;++i) {
+				long key = order[i];
+				int j = i;
+				for (;j>0 && (order[j-1]>>>32)==(key>>>32)
+						&& m_ReplicaOf[(int)order[j-1]]>m_ReplicaOf[(int)key];--j) {
+					order[j] = order[j-1];
+				}
+				order[j] = key;
+			}
+			m_SourceOrder = order;
+		}
+		return m_SourceOrder;
+	}
+
+	/**
+	 * Returns the class histogram of every replica on a numeric attribute,
+	 * with the bins limited by the given split points (which hold the
+	 * largest value of their bin). It is built on every call.
+	 *
+	 * @param column the values of the attribute (see column)
+	 * @param limits the split points, in increasing order
+	 */
+	public final ReplicaHistogram histogram(double[] column, double[] limits) {
+		load();
+		int numBins = limits.length+1;
+		int[] bins = new int[column.length];
+		for (int i=0;i<column.length;++i) {
+			if (Utils.isMissingValue(column[i])) {
+				bins[i] = numBins;
+			}
+			else {
+				bins[i] = ReplicaBins.binOf(limits, column[i]);
+			}
+		}
+		return new ReplicaHistogram(m_Indices.length, numBins, m_Data.numClasses(),
+				bins, m_ReplicaOf, m_Labels, m_Weights);
+	}
+
+	/**
+	 * Partitions the subsets of a split of the partitioned data (see
+	 * ClassifierSplitModel.split), keeping the order of the instances
+	 * on the attributes that were already sorted, and the histograms of
+	 * the attributes that were already quantized, if the instances of the
+	 * subsets are rows of the column store. This partition is released.
+	 *
+	 * @param subsets the subsets, whose instances must be in data order
+	 * @return the partition of every subset
+	 */
+	public final ReplicaPartition[] split(Instances[] subsets) {
+		load();
+		ReplicaPartition[] results = new ReplicaPartition[subsets.length];
+		for (int j=0;j<subsets.length;++j) {
+			results[j] = new ReplicaPartition(subsets[j], m_Columns, m_Bins);
+		}
+		if (m_Columns == null) {
+			release();
+			return results;
+		}
+
+		int[] subsetOf = new int[m_NumInstances];
+		int[] positions = new int[m_NumInstances];
+		int[][] multiPositions = new int[m_NumInstances][];
+		Arrays.fill(subsetOf, -1);
+		for (int j=0;j<subsets.length;++j) {
+			if (!locate(subsets[j], j, subsets.length, subsetOf, positions, multiPositions)) {
+				release();
+				return results;
+			}
+		}
+		inherit(results, subsetOf, positions, multiPositions);
+		release();
+		return results;
+	}
+
+	/**
+	 * Partitions the subsets of the given split of the rows of the node
+	 * (see ClassifierSplitModel.split), which are moved in place (see
+	 * ReplicaRows.split), keeping the order of the instances on the
+	 * attributes that were already sorted, and the histograms of the
+	 * attributes that were already quantized. This partition is released,
+	 * so the tree only keeps the rows of the node (see rows).
+	 *
+	 * @param model the split model
+	 * @return the partition of every subset
+	 * @exception Exception if something goes wrong
+	 */
+	public final ReplicaPartition[] split(ClassifierSplitModel model) throws Exception {
+		load();
+		int numSubsets = model.numSubsets();
+		double[] values = column(model.attIndex());
+		int[] subsets = new int[values.length];
+		double[][] fractions = new double[values.length][];
+		for (int i=0;i<values.length;++i) {
+			subsets[i] = model.whichSubset(m_ReplicaOf[i], values[i]);
+			if (subsets[i] < 0) {
+				fractions[i] = model.weights(m_ReplicaOf[i], values[i]);
+			}
+		}
+		int[] positions = new int[values.length];
+		int[][] multiPositions = new int[values.length][];
+		ReplicaRows[] rows = m_RowRange.split(numSubsets, subsets, fractions,
+				positions, multiPositions);
+		ReplicaPartition[] results = new ReplicaPartition[numSubsets];
+		for (int j=0;j<numSubsets;++j) {
+			results[j] = new ReplicaPartition(rows[j], m_Columns, m_Bins);
+		}
+		inherit(results, subsets, positions, multiPositions);
+		release();
+		return results;
+	}
+
+	/**
+	 * Keeps the order of the instances on the sorted attributes, and the
+	 * histograms of the quantized attributes, in the partitions of the
+	 * subsets of a split. The order of every sorted attribute is moved to
+	 * the ranges of the subsets in one stable pass. If every instance goes
+	 * to a single subset, the ranges of the subsets are the range of this
+	 * partition, which is overwritten; otherwise the subsets get a new
+	 * order. The partitions of the subsets are not loaded.
+	 *
+	 * @param results the partition of every subset
+	 * @param subsets the subset of every instance of this partition, or -1
+	 * if it goes to more than one subset (or to none)
+	 * @param positions the position in its subset of every instance that
+	 * goes to a single subset
+	 * @param multiPositions the position in every subset (-1 if not in
+	 * the subset) of every instance that goes to more than one subset
+	 * (null if it goes to none)
+	 */
+	private void inherit(ReplicaPartition[] results, int[] subsets, int[] positions,
+			int[][] multiPositions) {
+		boolean disjoint = true;
+		for (int i=0;i<subsets.length && disjoint;++i) {
+			disjoint = subsets[i]>=0;
+		}
+		Order order = m_Order;
+		int start = m_OrderStart;
+		if (!disjoint) {
+			int total = 0;
+			for (int j=0;j<results.length;++j) {
+				total += results[j].m_NumInstances;
+			}
+			order = new Order(total, m_Sorted.length);
+			start = 0;
+		}
+		int[] starts = new int[results.length];
+		int largest = 0;
+		for (int j=0;j<results.length;++j) {
+			results[j].m_Order = order;
+			results[j].m_OrderStart = starts[j] = start;
+			start += results[j].m_NumInstances;
+			if (results[j].m_NumInstances>results[largest].m_NumInstances) {
+				largest = j;
+			}
+		}
+
+		int[] next = new int[results.length];
+		for (int att=0;att<m_Sorted.length;++att) {
+			if (!m_Sorted[att]) {
+				continue;
+			}
+			int[] sorted = Arrays.copyOfRange(m_Order.sorted(att), m_OrderStart,
+					m_OrderStart+m_NumInstances);
+			int[] target = order.sorted(att);
+			System.arraycopy(starts, 0, next, 0, next.length);
+			for (int k=0;k<sorted.length;++k) {
+				int i = sorted[k];
+				if (subsets[i]>=0) {
+					target[next[subsets[i]]++] = positions[i];
+				}
+				else if (multiPositions[i] != null) {
+					for (int j=0;j<results.length;++j) {
+						if (multiPositions[i][j]>=0) {
+							target[next[j]++] = multiPositions[i][j];
+						}
+					}
+				}
+			}
+			for (int j=0;j<results.length;++j) {
+				results[j].m_Sorted[att] = true;
+			}
+		}
+
+		// Histograms of the largest subset by subtraction, the ones of the
+		// other subsets in one pass over this partition
+		if (disjoint && m_Bins != null) {
+			int[] bins = new int[m_NumInstances];
+			for (int att=0;att<m_Histograms.length;++att) {
+				if (m_Histograms[att] == null) {
+					continue;
+				}
+				m_Bins.gather(att, m_Rows, bins);
+				ReplicaHistogram[] histograms = new ReplicaHistogram[results.length];
+				for (int j=0;j<results.length;++j) {
+					if (j != largest) {
+						histograms[j] = new ReplicaHistogram(m_Indices.length,
+								m_Bins.numBins(att), m_Data.numClasses());
+					}
+				}
+				for (int i=0;i<m_NumInstances;++i) {
+					if (subsets[i] != largest) {
+						histograms[subsets[i]].add(bins[i], m_ReplicaOf[i], m_Labels[i],
+								m_Weights[i]);
+					}
+				}
+				ReplicaHistogram others = null;
+				for (int j=0;j<results.length;++j) {
+					if (j == largest) {
+						continue;
+					}
+					results[j].m_Histograms[att] = histograms[j];
+					if (others == null) {
+						others = new ReplicaHistogram(histograms[j]);
+					}
+					else {
+						others.add(histograms[j]);
+					}
+				}
+				results[largest].m_Histograms[att] = others == null ? m_Histograms[att] :
+					new ReplicaHistogram(m_Histograms[att], others);
+			}
+		}
+	}
+
+	/**
+	 * Finds the instances of a subset of a split of this partition, which
+	 * must be rows of the column store in data order.
+	 *
+	 * @param subset the instances of the subset
+	 * @param index the index of the subset
+	 * @param numSubsets the number of subsets
+	 * @param subsetOf the subset of every instance of this partition (-1
+	 * if more than one or none so far), which is updated
+	 * @param positions the position in its subset of every instance that
+	 * goes to a single subset, which is updated
+	 * @param multiPositions the position in every subset of every instance
+	 * that goes to more than one subset, which is updated
+	 * @return false if the instances of the subset are not a subsequence
+	 * of the ones of this partition
+	 */
+	private boolean locate(Instances subset, int index, int numSubsets, int[] subsetOf,
+			int[] positions, int[][] multiPositions) {
+		int p = 0;
+		for (int i=0;i<subset.numInstances();++i) {
+			int row = m_Columns.rowOf(subset.instance(i));
+			while (p<m_Rows.length && m_Rows[p]!=row) {
+				p++;
+			}
+			if (p==m_Rows.length) {
+				return false;
+			}
+			if (subsetOf[p]<0 && multiPositions[p] == null) {
+				subsetOf[p] = index;
+				positions[p] = i;
+			}
+			else {
+				if (subsetOf[p]>=0) {
+					multiPositions[p] = new int[numSubsets];
+					Arrays.fill(multiPositions[p], -1);
+					multiPositions[p][subsetOf[p]] = positions[p];
+					subsetOf[p] = -1;
+				}
+				multiPositions[p][index] = i;
+			}
+			p++;
+		}
+		return true;
+	}
+
+	/**
+	 * Returns a copy of the instances of the given replica.
+	 */
+	public final Instances replica(int replica) {
+		load();
+		int[] indices = m_Indices[replica];
+		Instances result = new Instances(m_Data,indices.length);
+		for (int i=0;i<indices.length;++i) {
+			result.add(m_Data.instance(indices[i]));
+		}
+		return result;
+	}
+
+	/**
+	 * Returns a copy of the instances of every replica.
+	 */
+	public final Instances[] replicas() {
+		load();
+		Instances[] results = new Instances[m_Indices.length];
+		for (int i=0;i<m_Indices.length;++i) {
+			results[i] = replica(i);
+		}
+		return results;
+	}
+}
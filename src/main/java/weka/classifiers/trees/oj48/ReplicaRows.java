@@ -0,0 +1,244 @@
+package weka.classifiers.trees.oj48;
+
+import java.util.Arrays;
+
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.Utils;
+
+/**
+ * Training instances of a node of the tree, as a range of an array of
+ * rows of a {@link ReplicaColumns} store that is shared by the nodes,
+ * with the weight of every row in a parallel array.
+ *
+ * A split partitions the range of a node in place into consecutive
+ * ranges, one per subset, keeping the order of the rows (see split), so
+ * the nodes of the tree only hold their ranges while it is grown instead
+ * of copies of their instances. The rows of a split on an attribute with
+ * missing values go to every subset with a fraction of their weight, so
+ * the subsets of such a split are kept in new arrays instead. The
+ * partition of a node (see ReplicaPartition) only copies the range while
+ * the node is built, so the extra memory of the nodes that are not being
+ * built doesn't grow with the depth of the tree.
+ *
+ * The rows only refer to the column store, so the training data can be
+ * kept out of the heap (see ChunkedReplicaColumns).
+ *
+ * @author João Costa (ei09008@fe.up.pt)
+ * @version $Revision: 1 $
+ */
+public class ReplicaRows {
+
+	/** Header of the training data */
+	private Instances m_Header;
+
+	/** The shared array of rows */
+	private int[] m_Rows;
+
+	/** Weight of each row of the shared array */
+	private double[] m_Weights;
+
+	/** First position of the range */
+	private int m_Start;
+
+	/** Position after the last one of the range */
+	private int m_End;
+
+	/**
+	 * Creates the given range of the given arrays.
+	 */
+	private ReplicaRows(Instances header, int[] rows, double[] weights,
+			int start, int end) {
+		m_Header = header;
+		m_Rows = rows;
+		m_Weights = weights;
+		m_Start = start;
+		m_End = end;
+	}
+
+	/**
+	 * Returns the rows of the given training data, or null if some
+	 * instance is not a row of the store or the rows are not in
+	 * increasing order.
+	 *
+	 * @param data the training data
+	 * @param columns the column store
+	 */
+	public static ReplicaRows of(Instances data, ReplicaColumns columns) {
+		int[] rows = new int[data.numInstances()];
+		double[] weights = new double[rows.length];
+		for (int i=0;i<rows.length;++i) {
+			Instance instance = data.instance(i);
+			rows[i] = columns.rowOf(instance);
+			if (rows[i]<0 || (i>0 && rows[i]<=rows[i-1])) {
+				return null;
+			}
+			weights[i] = instance.weight();
+		}
+		return new ReplicaRows(new Instances(data, 0), rows, weights, 0, rows.length);
+	}
+
+	/**
+	 * Returns all the rows of a column store, with the given weights.
+	 *
+	 * @param header the header of the training data
+	 * @param weights the weight of every row of the store
+	 */
+	public static ReplicaRows of(Instances header, double[] weights) {
+		int[] rows = new int[weights.length];
+		for (int i=0;i<rows.length;++i) {
+			rows[i] = i;
+		}
+		return new ReplicaRows(new Instances(header, 0), rows, weights, 0, rows.length);
+	}
+
+	/**
+	 * Returns the header of the training data.
+	 */
+	public final Instances header() {
+		return m_Header;
+	}
+
+	/**
+	 * Returns the number of rows.
+	 */
+	public final int numRows() {
+		return m_End-m_Start;
+	}
+
+	/**
+	 * Returns a copy of the rows.
+	 */
+	public final int[] rows() {
+		return Arrays.copyOfRange(m_Rows, m_Start, m_End);
+	}
+
+	/**
+	 * Returns a copy of the weights of the rows.
+	 */
+	public final double[] weights() {
+		return Arrays.copyOfRange(m_Weights, m_Start, m_End);
+	}
+
+	/**
+	 * Partitions the rows into the given number of subsets. The rows
+	 * of each subset keep their order, and are moved to a range of the
+	 * range of this node, unless some row goes to more than one subset.
+	 * In that case the subsets are copied into new arrays, and this
+	 * range is not changed.
+	 *
+	 * @param numSubsets the number of subsets
+	 * @param subsets the subset of every row, or -1 if it goes to more
+	 * than one subset
+	 * @param fractions the fraction of the weight of every row that goes
+	 * to each subset (only read for the rows whose subset is -1)
+	 * @param positions the array that receives the position in its subset
+	 * of every row that goes to a single subset
+	 * @param multiPositions the array that receives the position in every
+	 * subset (-1 if not in the subset) of every row whose subset is -1
+	 * @return the rows of every subset
+	 */
+	public final ReplicaRows[] split(int numSubsets, int[] subsets,
+			double[][] fractions, int[] positions, int[][] multiPositions) {
+		int numRows = numRows();
+		int[] counts = new int[numSubsets];
+		boolean copy = false;
+		for (int i=0;i<numRows;++i) {
+			if (subsets[i]>=0) {
+				counts[subsets[i]]++;
+			}
+			else {
+				copy = true;
+				for (int j=0;j<numSubsets;++j) {
+					if (Utils.gr(fractions[i][j],0)) {
+						counts[j]++;
+					}
+				}
+			}
+		}
+
+		// Source and target of the rows
+		int[] rows = rows();
+		double[] weights = weights();
+		int[] targetRows = m_Rows;
+		double[] targetWeights = m_Weights;
+		int start = m_Start;
+		if (copy) {
+			int total = 0;
+			for (int j=0;j<numSubsets;++j) {
+				total += counts[j];
+			}
+			targetRows = new int[total];
+			targetWeights = new double[total];
+			start = 0;
+		}
+
+		ReplicaRows[] results = new ReplicaRows[numSubsets];
+		int[] next = new int[numSubsets];
+		for (int j=0;j<numSubsets;++j) {
+			results[j] = new ReplicaRows(m_Header, targetRows, targetWeights,
+					start, start+counts[j]);
+			next[j] = start;
+			start += counts[j];
+		}
+		for (int i=0;i<numRows;++i) {
+			if (subsets[i]>=0) {
+				int j = subsets[i];
+				positions[i] = next[j]-results[j].m_Start;
+				targetRows[next[j]] = rows[i];
+				targetWeights[next[j]++] = weights[i];
+			}
+			else {
+				multiPositions[i] = new int[numSubsets];
+				Arrays.fill(multiPositions[i], -1);
+				for (int j=0;j<numSubsets;++j) {
+					if (Utils.gr(fractions[i][j],0)) {
+						multiPositions[i][j] = next[j]-results[j].m_Start;
+						targetRows[next[j]] = rows[i];
+						targetWeights[next[j]++] = fractions[i][j]*weights[i];
+					}
+				}
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * Sorts the rows of the range in increasing order (the order of the
+	 * instances of the training data). The ranges of the subsets of
+	 * former splits of this range are not valid afterwards.
+	 */
+	public final void sort() {
+		long[] keys = new long[numRows()];
+		for (int i=0;i<keys.length;++i) {
+			keys[i] = ((long)m_Rows[m_Start+i] << 32) | i;
+		}
+		Arrays.sort(keys);
+		double[] weights = weights();
+		for (int i=0;i<keys.length;++i) {
+			m_Rows[m_Start+i] = (int)(keys[i] >>> 32);
+			m_Weights[m_Start+i] = weights[(int)keys[i]];
+		}
+	}
+
+	/**
+	 * Returns the sum of the weights of the rows.
+	 */
+	public final double sumOfWeights() {
+		double sum = 0;
+		for (int i=m_Start;i<m_End;++i) {
+			sum += m_Weights[i];
+		}
+		return sum;
+	}
+
+	/**
+	 * Returns a copy of the rows, with their weights, in increasing order
+	 * (this range is not changed).
+	 */
+	public final ReplicaRows sortedCopy() {
+		ReplicaRows sorted = new ReplicaRows(m_Header, rows(), weights(), 0, numRows());
+		sorted.sort();
+		return sorted;
+	}
+}
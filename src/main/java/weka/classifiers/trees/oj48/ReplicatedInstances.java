@@ -0,0 +1,209 @@
+package weka.classifiers.trees.oj48;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import weka.classifiers.CostMatrix;
+import weka.core.Attribute;
+import weka.core.Instance;
+import weka.core.Instances;
+
+/**
+ * Replicated dataset (data replication method) that keeps the original
+ * rows only once.
+ *
+ * Every replicated instance is a {@link ReplicaInstance}, which derives
+ * its attribute values, binary label and replica indicators from the
+ * original row. Only the weight is stored per replicated instance.
+ *
+ * The original row of each replicated row is kept too, so column stores
+ * can keep the values once per original row (see HeapReplicaColumns).
+ *
+ * The replicas can be built in parallel on a fork-join pool. Each replica
+ * fills its own block of rows, so the order of the instances is the same
+ * as when they are built sequentially.
+ *
+ * @author João Costa (ei09008@fe.up.pt)
+ * @version $Revision: 1 $
+ */
+public class ReplicatedInstances extends Instances {
+
+	/** for serialization */
+	private static final long serialVersionUID = 3960184311522916785L;
+
+	/** The original data */
+	protected Instances m_SourceData;
+
+	/** Original row of each row */
+	protected int[] m_SourceRows;
+
+	/**
+	 * Creates the replicated view of the given data.
+	 *
+	 * @param data the original data
+	 * @param s s value from the data replication method (0 = K-1)
+	 * @param cMatrix cost matrices for each instance (Lin and Li weights),
+	 * or null to keep the original weights
+	 */
+	public ReplicatedInstances(Instances data, int s, CostMatrix[] cMatrix) {
+		this(data, s, cMatrix, null);
+	}
+
+	/**
+	 * Creates the replicated view of the given data, building the
+	 * replicas on the given pool.
+	 *
+	 * @param data the original data
+	 * @param s s value from the data replication method (0 = K-1)
+	 * @param cMatrix cost matrices for each instance (Lin and Li weights),
+	 * or null to keep the original weights
+	 * @param pool the pool that builds the replicas, or null to build
+	 * them in the current thread
+	 */
+	public ReplicatedInstances(final Instances data, final int s,
+			final CostMatrix[] cMatrix, ForkJoinPool pool) {
+		super(data.relationName(), replicatedAttributes(data),
+				data.numInstances()*(data.numClasses()-1));
+		setClassIndex(data.numAttributes()-1);
+		m_SourceData = data;
+
+		// The rows of each replica follow the rows of the previous one
+		final int numReplicas = data.numClasses()-1;
+		final int[] offsets = new int[numReplicas+1];
+		for (int i=0;i<numReplicas;++i) {
+			offsets[i+1] = offsets[i];
+			for (int j=0;j<data.numInstances();++j) {
+				if (inWindow(data.instance(j).classValue(),i,s)) {
+					offsets[i+1]++;
+				}
+			}
+		}
+
+		final ReplicaInstance[] rows = new ReplicaInstance[offsets[numReplicas]];
+		final int[] sourceRows = new int[offsets[numReplicas]];
+		if (pool == null) {
+			for (int i=0;i<numReplicas;++i) {
+				fillReplica(data,s,cMatrix,i,rows,sourceRows,offsets[i]);
+			}
+		}
+		else {
+			List<ForkJoinTask<?>> tasks = new ArrayList<ForkJoinTask<?>>();
+			for (int i=0;i<numReplicas;++i) {
+				final int replica = i;
+				tasks.add(pool.submit(new Runnable() {
+					public void run() {
+						fillReplica(data,s,cMatrix,replica,rows,sourceRows,offsets[replica]);
+					}
+				}));
+			}
+			for (ForkJoinTask<?> task:tasks) {
+				task.join();
+			}
+		}
+
+		m_SourceRows = sourceRows;
+		for (int i=0;i<rows.length;++i) {
+			rows[i].setDataset(this);
+			m_Instances.add(rows[i]);
+		}
+	}
+
+	/**
+	 * Creates the rows of one replica.
+	 *
+	 * @param data the original data
+	 * @param s s value from the data replication method (0 = K-1)
+	 * @param cMatrix cost matrices for each instance, or null
+	 * @param replica the replica to create
+	 * @param rows the rows of the replicated data
+	 * @param sourceRows the original row of each row
+	 * @param offset the first row of the replica
+	 */
+	private static void fillReplica(Instances data, int s, CostMatrix[] cMatrix,
+			int replica, ReplicaInstance[] rows, int[] sourceRows, int offset) {
+		int K = data.numClasses();
+		int row = offset;
+		for (int j=0;j<data.numInstances();++j) {
+			Instance instance = data.instance(j);
+			double oldClass = instance.classValue();
+
+			// Clean extra points
+			if (!inWindow(oldClass,replica,s)) {
+				continue;
+			}
+
+			double weight = instance.weight();
+			// Lin and Li weights
+			try {
+				if (cMatrix!=null) {
+					weight =
+					    (K-1)*Math.abs(
+					        cMatrix[j].getElement((int)oldClass,replica)-
+					        cMatrix[j].getElement((int)oldClass,replica+1)
+					    );
+				}
+			} catch(Exception e) {} // Keep default weight
+
+			rows[row] = new ReplicaInstance(instance, replica, weight, row);
+			sourceRows[row] = j;
+			row++;
+		}
+	}
+
+	/**
+	 * Returns true if an instance of the given class is kept in the given
+	 * replica (s-window of the data replication method).
+	 */
+	private static boolean inWindow(double oldClass, int replica, int s) {
+		return !(s>0 && (oldClass<replica-s || oldClass>replica+s));
+	}
+
+	/**
+	 * Returns the original data.
+	 */
+	public Instances sourceData() {
+		return m_SourceData;
+	}
+
+	/**
+	 * Returns the original row of the given row (see
+	 * ReplicaInstance.row), i.e. its index in the original data.
+	 */
+	public int sourceRow(int row) {
+		return m_SourceRows[row];
+	}
+
+	/**
+	 * Returns the number of replicas.
+	 */
+	public int numReplicas() {
+		return m_SourceData.numClasses()-1;
+	}
+
+	/**
+	 * Builds the attributes of the replicated data: the original
+	 * attributes without the class, the binary label and
+	 * the replica indicators.
+	 */
+	private static ArrayList<Attribute> replicatedAttributes(Instances data) {
+		ArrayList<Attribute> attributes = new ArrayList<Attribute>();
+		for (int i=0;i<data.numAttributes();++i) {
+			if (i!=data.classIndex()) {
+				attributes.add((Attribute)data.attribute(i).copy());
+			}
+		}
+
+		List<String> binaryValues = new ArrayList<String>();
+		binaryValues.add("0");
+		binaryValues.add("1");
+		attributes.add(new Attribute("Binary Label", binaryValues));
+
+		int extraAttributes = data.numClasses() - 2;
+		for (int i=0;i<extraAttributes;++i) {
+			attributes.add(new Attribute("rep"+i));
+		}
+		return attributes;
+	}
+}
@@ -0,0 +1,188 @@
+package weka.classifiers.trees.oj48;
+
+import java.util.Arrays;
+
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.Utils;
+
+/**
+ * Sorted distinct values of the numeric attributes of a dataset, used to
+ * move the split points of numeric splits to the largest value of the
+ * dataset that is not above them (see C45Split.setSplitPoint) with a
+ * binary search instead of a pass over the dataset.
+ *
+ * Values that differ by less than 1e-6 are the same value for C4.5, so
+ * which one of them a pass over the dataset returns depends on the order
+ * of the instances. In that case no value is returned, and the caller
+ * has to find it in the dataset.
+ *
+ * An index of a column store that is not kept in the heap (see
+ * ChunkedReplicaColumns) doesn't keep the values either. It finds them
+ * by a pass over the column in the order of the rows, as the pass over
+ * the dataset would, so the split points of all the replicas of a split
+ * are found in a single pass (see largestValues).
+ *
+ * @author João Costa (ei09008@fe.up.pt)
+ * @version $Revision: 1 $
+ */
+public class SortedValueIndex {
+
+	/** Number of rows read at a time from a column store */
+	private static final int SCAN_SIZE = 1 << 16;
+
+	/** Sorted distinct values of each numeric attribute (null for the others) */
+	private double[][] m_Values;
+
+	/** Column store whose columns are read instead of the values (or null) */
+	private ReplicaColumns m_Columns;
+
+	/** Whether each attribute is read from the column store */
+	private boolean[] m_Scanned;
+
+	/**
+	 * Sorts the values of the numeric attributes (apart from the class)
+	 * of the given dataset.
+	 *
+	 * @param data the dataset
+	 */
+	public SortedValueIndex(Instances data) {
+		m_Values = new double[data.numAttributes()][];
+		for (int j=0;j<data.numAttributes();++j) {
+			if (j==data.classIndex() || !data.attribute(j).isNumeric()) {
+				continue;
+			}
+			double[] values = new double[data.numInstances()];
+			int numValues = 0;
+			for (int i=0;i<data.numInstances();++i) {
+				Instance instance = data.instance(i);
+				if (!instance.isMissing(j)) {
+					values[numValues++] = instance.value(j);
+				}
+			}
+			Arrays.sort(values, 0, numValues);
+
+			// Keep distinct values (-0.0 and 0.0 are both kept)
+			int numDistinct = 0;
+			for (int i=0;i<numValues;++i) {
+				if (numDistinct==0 || Double.compare(values[numDistinct-1], values[i])!=0) {
+					values[numDistinct++] = values[i];
+				}
+			}
+			m_Values[j] = Arrays.copyOf(values, numDistinct);
+		}
+	}
+
+	/**
+	 * Indexes the numeric attributes (apart from the class) of the rows of
+	 * the given column store, which are read on every search instead of
+	 * being kept.
+	 *
+	 * @param columns the column store
+	 * @param header the header of the data of the store
+	 */
+	public SortedValueIndex(ReplicaColumns columns, Instances header) {
+		m_Values = new double[header.numAttributes()][];
+		m_Columns = columns;
+		m_Scanned = new boolean[header.numAttributes()];
+		for (int j=0;j<header.numAttributes();++j) {
+			m_Scanned[j] = j!=header.classIndex() && header.attribute(j).isNumeric();
+		}
+	}
+
+	/**
+	 * Returns true if the given attribute is indexed.
+	 */
+	public final boolean isIndexed(int attIndex) {
+		return m_Values[attIndex]!=null || (m_Scanned!=null && m_Scanned[attIndex]);
+	}
+
+	/**
+	 * Returns the largest value of the given attribute that is not above
+	 * the given split point (by more than 1e-6), -Double.MAX_VALUE if there
+	 * is none, or NaN if it depends on the order of the instances.
+	 *
+	 * @param attIndex the (numeric) attribute
+	 * @param splitPoint the split point
+	 */
+	public final double largestValue(int attIndex, double splitPoint) {
+		if (m_Values[attIndex]==null) {
+			return scan(attIndex, new double[] {splitPoint})[0];
+		}
+		double[] values = m_Values[attIndex];
+
+		// First value above the split point
+		int low = 0;
+		int high = values.length;
+		while (low<high) {
+			int middle = (low+high) >>> 1;
+			if (Utils.smOrEq(values[middle], splitPoint)) {
+				low = middle+1;
+			}
+			else {
+				high = middle;
+			}
+		}
+		if (low==0 || !Utils.gr(values[low-1], -Double.MAX_VALUE)) {
+			return -Double.MAX_VALUE;
+		}
+		if (low>1 && !Utils.gr(values[low-1], values[low-2])) {
+			return Double.NaN;
+		}
+		return values[low-1];
+	}
+
+	/**
+	 * Returns the largest value of the given attribute that is not above
+	 * each of the given split points (see largestValue). The column of a
+	 * column store is only read once.
+	 *
+	 * @param attIndex the (numeric) attribute
+	 * @param splitPoints the split points
+	 */
+	public final double[] largestValues(int attIndex, double[] splitPoints) {
+		if (m_Values[attIndex]==null) {
+			return scan(attIndex, splitPoints);
+		}
+		double[] largest = new double[splitPoints.length];
+		for (int k=0;k<splitPoints.length;++k) {
+			largest[k] = largestValue(attIndex, splitPoints[k]);
+		}
+		return largest;
+	}
+
+	/**
+	 * Returns the first largest value of the given attribute in the rows
+	 * of the column store that is not above each of the given split
+	 * points, or -Double.MAX_VALUE if there is none.
+	 */
+	private double[] scan(int attIndex, double[] splitPoints) {
+		double[] largest = new double[splitPoints.length];
+		Arrays.fill(largest, -Double.MAX_VALUE);
+		int numRows = m_Columns.numRows();
+		int[] rows = new int[Math.min(SCAN_SIZE, numRows)];
+		double[] column = new double[rows.length];
+		for (int start=0;start<numRows;start+=rows.length) {
+			int size = Math.min(rows.length, numRows-start);
+			if (size<rows.length) {
+				rows = new int[size];
+			}
+			for (int i=0;i<size;++i) {
+				rows[i] = start+i;
+			}
+			m_Columns.gather(attIndex, rows, column);
+			for (int i=0;i<size;++i) {
+				double value = column[i];
+				if (Utils.isMissingValue(value)) {
+					continue;
+				}
+				for (int k=0;k<splitPoints.length;++k) {
+					if (Utils.gr(value, largest[k]) && Utils.smOrEq(value, splitPoints[k])) {
+						largest[k] = value;
+					}
+				}
+			}
+		}
+		return largest;
+	}
+}
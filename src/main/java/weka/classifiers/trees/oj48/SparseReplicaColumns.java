@@ -0,0 +1,218 @@
+package weka.classifiers.trees.oj48;
+
+import java.util.Arrays;
+
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.SparseInstance;
+
+/**
+ * Column store for replicated data whose original rows are sparse
+ * (e.g. text or one-hot encoded data).
+ *
+ * Only the non-zero values of the original attributes are kept, once per
+ * original row: every column holds the original rows with a non-zero
+ * value and their values. Each replicated row only keeps its original
+ * row, its replica and its binary label, and the replica indicators are
+ * derived from the replica. The memory used depends on the number of
+ * non-zero values, not on the number of attributes.
+ *
+ * A column is read by merging the original rows of the rows read with the
+ * rows of its non-zero values (with a galloping search, restarted when
+ * the original rows go down, e.g. at the next replica), so it takes time
+ * proportional to the number of rows read, times the log of the distance
+ * between their non-zero values, and needs no buffers.
+ *
+ * @author João Costa (ei09008@fe.up.pt)
+ * @version $Revision: 1 $
+ */
+public class SparseReplicaColumns extends ReplicaColumns {
+
+	/** Original rows with a non-zero value, per original attribute */
+	private int[][] m_NonZeroRows;
+
+	/** Non-zero values, per original attribute */
+	private double[][] m_NonZeroValues;
+
+	/** Original row of each row */
+	private int[] m_Sources;
+
+	/** Replica of each row */
+	private int[] m_Replicas;
+
+	/** Binary label of each row */
+	private byte[] m_Labels;
+
+	/** Index of the class (binary label) in the replicated data */
+	private int m_ClassIndex;
+
+	/** Number of original rows */
+	private int m_NumSourceRows;
+
+	/**
+	 * Copies the non-zero values of the given replicated data.
+	 *
+	 * @param data the replicated data
+	 */
+	public SparseReplicaColumns(ReplicatedInstances data) {
+		Instances source = data.sourceData();
+		int sourceClassIndex = source.classIndex();
+		m_ClassIndex = data.classIndex();
+		m_NumSourceRows = source.numInstances();
+
+		// Count the non-zero values of each attribute
+		int[] counts = new int[m_ClassIndex];
+		for (int i=0;i<m_NumSourceRows;++i) {
+			Instance instance = source.instance(i);
+			for (int p=0;p<instance.numValues();++p) {
+				int index = instance.index(p);
+				if (index!=sourceClassIndex && instance.valueSparse(p)!=0) {
+					counts[index<sourceClassIndex?index:index-1]++;
+				}
+			}
+		}
+		m_NonZeroRows = new int[m_ClassIndex][];
+		m_NonZeroValues = new double[m_ClassIndex][];
+		for (int j=0;j<m_ClassIndex;++j) {
+			m_NonZeroRows[j] = new int[counts[j]];
+			m_NonZeroValues[j] = new double[counts[j]];
+		}
+
+		// Fill the columns (rows in ascending order)
+		Arrays.fill(counts, 0);
+		for (int i=0;i<m_NumSourceRows;++i) {
+			Instance instance = source.instance(i);
+			for (int p=0;p<instance.numValues();++p) {
+				int index = instance.index(p);
+				double value = instance.valueSparse(p);
+				if (index!=sourceClassIndex && value!=0) {
+					int j = index<sourceClassIndex?index:index-1;
+					m_NonZeroRows[j][counts[j]] = i;
+					m_NonZeroValues[j][counts[j]] = value;
+					counts[j]++;
+				}
+			}
+		}
+
+		int numRows = numRows(data);
+		m_Sources = new int[numRows];
+		m_Replicas = new int[numRows];
+		m_Labels = new byte[numRows];
+		for (int i=0;i<data.numInstances();++i) {
+			if (!(data.instance(i) instanceof ReplicaInstance)) {
+				continue;
+			}
+			ReplicaInstance instance = (ReplicaInstance)data.instance(i);
+			int row = instance.row();
+			if (row<0) {
+				continue;
+			}
+			m_Sources[row] = data.sourceRow(row);
+			m_Replicas[row] = instance.replica();
+			m_Labels[row] = (byte)instance.classValue();
+		}
+	}
+
+	public final int numRows() {
+		return m_Labels.length;
+	}
+
+	public final int numSourceRows() {
+		return m_NumSourceRows;
+	}
+
+	public final void gatherSources(int[] rows, int[] sources) {
+		for (int i=0;i<rows.length;++i) {
+			sources[i] = m_Sources[rows[i]];
+		}
+	}
+
+	public final void gather(int attIndex, int[] rows, double[] column) {
+		if (attIndex<m_ClassIndex) {
+			int[] nonZeroRows = m_NonZeroRows[attIndex];
+			double[] nonZeroValues = m_NonZeroValues[attIndex];
+			int position = 0;
+			int previous = -1;
+			for (int i=0;i<rows.length;++i) {
+				int source = m_Sources[rows[i]];
+				if (source<previous) {
+					position = 0;
+				}
+				position = seek(nonZeroRows, position, source);
+				if (position<nonZeroRows.length && nonZeroRows[position]==source) {
+					column[i] = nonZeroValues[position];
+				}
+				else {
+					column[i] = 0;
+				}
+				previous = source;
+			}
+		}
+		else if (attIndex==m_ClassIndex) {
+			for (int i=0;i<rows.length;++i) {
+				column[i] = m_Labels[rows[i]];
+			}
+		}
+		else {
+			// Replica indicators
+			int replica = attIndex-m_ClassIndex;
+			for (int i=0;i<rows.length;++i) {
+				column[i] = m_Replicas[rows[i]]==replica?1:0;
+			}
+		}
+	}
+
+	public final int label(int row) {
+		return m_Labels[row];
+	}
+
+	public final int replica(int row) {
+		return m_Replicas[row];
+	}
+
+	/**
+	 * Returns true if all the original rows of the given replicated
+	 * data are sparse.
+	 *
+	 * @param data the replicated data
+	 */
+	public static boolean isSparse(ReplicatedInstances data) {
+		Instances source = data.sourceData();
+		if (source.numInstances()==0) {
+			return false;
+		}
+		for (int i=0;i<source.numInstances();++i) {
+			if (!(source.instance(i) instanceof SparseInstance)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the first position from the given one whose value is not
+	 * below the given key, in the given sorted array (or its length),
+	 * with a galloping search.
+	 */
+	private static int seek(int[] sorted, int from, int key) {
+		int low = from;
+		int high = from;
+		int step = 1;
+		while (high<sorted.length && sorted[high]<key) {
+			low = high+1;
+			high += step;
+			step <<= 1;
+		}
+		high = Math.min(high, sorted.length);
+		while (low<high) {
+			int middle = (low+high) >>> 1;
+			if (sorted[middle]<key) {
+				low = middle+1;
+			}
+			else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+}
@@ -0,0 +1,168 @@
+package weka.classifiers.trees.oj48;
+
+/**
+ * Block of candidate splits of a numeric attribute for one replica, kept
+ * as the cells of their two-bag two-class distributions so that they are
+ * evaluated together (see InfoGainSplitCrit.splitCritValues).
+ *
+ * @author João Costa (ei09008@fe.up.pt)
+ * @version $Revision: 1 $
+ */
+public class SplitCandidates {
+
+	/** Largest number of candidates of a block */
+	public static final int CAPACITY = 256;
+
+	/** Weight of each class in each bag, per candidate */
+	double[] m_Cell00;
+	double[] m_Cell01;
+	double[] m_Cell10;
+	double[] m_Cell11;
+
+	/** Weight of each bag, per candidate */
+	double[] m_Bag0;
+	double[] m_Bag1;
+
+	/** Total weight of the distributions */
+	double m_Total;
+
+	/** Index of the last instance of the first bag, per candidate */
+	private int[] m_SplitIndices;
+
+	/** First value of the second bag, per candidate */
+	private double[] m_SplitValues;
+
+	/** Number of candidates */
+	private int m_Count;
+
+	/** Candidate that is only added if needed (see setPending) */
+	private double m_PendingCell00, m_PendingCell01, m_PendingCell10, m_PendingCell11;
+	private double m_PendingBag0, m_PendingBag1, m_PendingSplitValue;
+	private int m_PendingSplitIndex = -1;
+
+	/**
+	 * Creates a block for the candidate splits of the given number of
+	 * instances, which has at most one candidate less than them (and at
+	 * most CAPACITY candidates).
+	 *
+	 * @param numInstances the number of instances with known values
+	 */
+	public SplitCandidates(int numInstances) {
+		int capacity = Math.max(1, Math.min(CAPACITY, numInstances-1));
+		m_Cell00 = new double[capacity];
+		m_Cell01 = new double[capacity];
+		m_Cell10 = new double[capacity];
+		m_Cell11 = new double[capacity];
+		m_Bag0 = new double[capacity];
+		m_Bag1 = new double[capacity];
+		m_SplitIndices = new int[capacity];
+		m_SplitValues = new double[capacity];
+	}
+
+	/**
+	 * Adds a candidate split.
+	 *
+	 * @param bags the distribution of the split (two bags and two classes)
+	 * @param splitIndex the index of the last instance of the first bag
+	 * @param splitValue the first value of the second bag
+	 */
+	public final void add(Distribution bags, int splitIndex, double splitValue) {
+		m_Cell00[m_Count] = bags.perClassPerBag(0,0);
+		m_Cell01[m_Count] = bags.perClassPerBag(0,1);
+		m_Cell10[m_Count] = bags.perClassPerBag(1,0);
+		m_Cell11[m_Count] = bags.perClassPerBag(1,1);
+		m_Bag0[m_Count] = bags.perBag(0);
+		m_Bag1[m_Count] = bags.perBag(1);
+		m_Total = bags.total();
+		m_SplitIndices[m_Count] = splitIndex;
+		m_SplitValues[m_Count] = splitValue;
+		m_Count++;
+	}
+
+	/**
+	 * Keeps a candidate split aside, replacing the one kept before. It
+	 * can be added later (see addPending), after other candidates have
+	 * been changed.
+	 *
+	 * @param bags the distribution of the split (two bags and two classes)
+	 * @param splitIndex the index of the last instance of the first bag
+	 * @param splitValue the first value of the second bag
+	 */
+	public final void setPending(Distribution bags, int splitIndex, double splitValue) {
+		m_PendingCell00 = bags.perClassPerBag(0,0);
+		m_PendingCell01 = bags.perClassPerBag(0,1);
+		m_PendingCell10 = bags.perClassPerBag(1,0);
+		m_PendingCell11 = bags.perClassPerBag(1,1);
+		m_PendingBag0 = bags.perBag(0);
+		m_PendingBag1 = bags.perBag(1);
+		m_Total = bags.total();
+		m_PendingSplitIndex = splitIndex;
+		m_PendingSplitValue = splitValue;
+	}
+
+	/**
+	 * Returns true if a candidate is kept aside.
+	 */
+	public final boolean hasPending() {
+		return m_PendingSplitIndex >= 0;
+	}
+
+	/**
+	 * Adds the candidate kept aside.
+	 */
+	public final void addPending() {
+		m_Cell00[m_Count] = m_PendingCell00;
+		m_Cell01[m_Count] = m_PendingCell01;
+		m_Cell10[m_Count] = m_PendingCell10;
+		m_Cell11[m_Count] = m_PendingCell11;
+		m_Bag0[m_Count] = m_PendingBag0;
+		m_Bag1[m_Count] = m_PendingBag1;
+		m_SplitIndices[m_Count] = m_PendingSplitIndex;
+		m_SplitValues[m_Count] = m_PendingSplitValue;
+		m_Count++;
+		m_PendingSplitIndex = -1;
+	}
+
+	/**
+	 * Drops the candidate kept aside.
+	 */
+	public final void clearPending() {
+		m_PendingSplitIndex = -1;
+	}
+
+	/**
+	 * Returns true if no more candidates can be added.
+	 */
+	public final boolean isFull() {
+		return m_Count == m_SplitIndices.length;
+	}
+
+	/**
+	 * Returns the number of candidates.
+	 */
+	public final int size() {
+		return m_Count;
+	}
+
+	/**
+	 * Removes all the candidates.
+	 */
+	public final void clear() {
+		m_Count = 0;
+	}
+
+	/**
+	 * Returns the index of the last instance of the first bag of the
+	 * given candidate.
+	 */
+	public final int splitIndex(int candidate) {
+		return m_SplitIndices[candidate];
+	}
+
+	/**
+	 * Returns the first value of the second bag of the given candidate.
+	 */
+	public final double splitValue(int candidate) {
+		return m_SplitValues[candidate];
+	}
+}
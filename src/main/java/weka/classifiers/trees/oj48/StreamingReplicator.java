@@ -0,0 +1,218 @@
+package weka.classifiers.trees.oj48;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.converters.Loader;
+
+/**
+ * Replicates data (data replication method) while it is read by an
+ * incremental loader (e.g. ArffLoader or CSVLoader), without loading the
+ * whole dataset.
+ *
+ * The rows are read in batches of a fixed number of original rows, and
+ * each batch is returned as its own {@link ReplicatedInstances}, so the
+ * memory used only depends on the batch size. The batches can be read
+ * ahead in a background thread, so that parsing overlaps with the
+ * processing of the previous batches (e.g. writing them with a
+ * {@link ReplicaChunkWriter}). The replicator must be closed if it is
+ * not read to the end, to stop the background thread.
+ *
+ * If the structure of the loader has no class, the last attribute is used.
+ * Cost matrices (Lin and Li weights) are not supported, as they are given
+ * per instance of the whole dataset.
+ *
+ * @author João Costa (ei09008@fe.up.pt)
+ * @version $Revision: 1 $
+ */
+public class StreamingReplicator {
+
+	/** A batch read in the background (null data at the end of the stream) */
+	private static class Batch {
+		ReplicatedInstances data;
+		Exception error;
+	}
+
+	/** The loader */
+	private Loader m_Loader;
+
+	/** The structure of the original data */
+	private Instances m_Structure;
+
+	/** s value from the data replication method (0 = K-1) */
+	private int m_S;
+
+	/** Number of original rows per batch */
+	private int m_BatchSize;
+
+	/** Batches read ahead (null if batches are read when requested) */
+	private BlockingQueue<Batch> m_Queue;
+
+	/** The thread that reads the batches ahead (null if there is none) */
+	private Thread m_Reader;
+
+	/** True after the last batch was returned */
+	private boolean m_Done;
+
+	/**
+	 * Creates a streaming replicator that reads the batches when they
+	 * are requested.
+	 *
+	 * @param loader the loader (with its source already set)
+	 * @param s s value from the data replication method (0 = K-1)
+	 * @param batchSize number of original rows per batch
+	 * @exception IOException if the structure can't be read
+	 */
+	public StreamingReplicator(Loader loader, int s, int batchSize)
+			throws IOException {
+		this(loader, s, batchSize, 0);
+	}
+
+	/**
+	 * Creates a streaming replicator.
+	 *
+	 * @param loader the loader (with its source already set)
+	 * @param s s value from the data replication method (0 = K-1)
+	 * @param batchSize number of original rows per batch
+	 * @param readAhead number of batches read ahead in a background
+	 * thread (0 = read the batches when they are requested)
+	 * @exception IOException if the structure can't be read
+	 */
+	public StreamingReplicator(Loader loader, int s, int batchSize, int readAhead)
+			throws IOException {
+		if (batchSize<1) {
+			throw new IllegalArgumentException("Batch size must be positive!");
+		}
+		m_Loader = loader;
+		m_S = s;
+		m_BatchSize = batchSize;
+		m_Structure = loader.getStructure();
+		if (m_Structure.classIndex()<0) {
+			m_Structure.setClassIndex(m_Structure.numAttributes()-1);
+		}
+
+		if (readAhead>0) {
+			m_Queue = new ArrayBlockingQueue<Batch>(readAhead);
+			m_Reader = new Thread(new Runnable() {
+				public void run() {
+					readAhead();
+				}
+			}, "StreamingReplicator");
+			m_Reader.setDaemon(true);
+			m_Reader.start();
+		}
+	}
+
+	/**
+	 * Returns the structure of the original data.
+	 */
+	public Instances structure() {
+		return m_Structure;
+	}
+
+	/**
+	 * Returns the number of replicas.
+	 */
+	public int numReplicas() {
+		return m_Structure.numClasses()-1;
+	}
+
+	/**
+	 * Returns the next batch of replicated data, or null if there
+	 * are no more rows.
+	 *
+	 * @exception Exception if the rows can't be read
+	 */
+	public ReplicatedInstances nextBatch() throws Exception {
+		if (m_Done) {
+			return null;
+		}
+		ReplicatedInstances batch;
+		if (m_Queue == null) {
+			batch = readBatch();
+		}
+		else {
+			Batch next = m_Queue.take();
+			if (next.error != null) {
+				m_Done = true;
+				throw next.error;
+			}
+			batch = next.data;
+		}
+		if (batch == null) {
+			m_Done = true;
+		}
+		return batch;
+	}
+
+	/**
+	 * Stops reading: the background thread is interrupted and the batches
+	 * read ahead are dropped. No more batches are returned afterwards.
+	 */
+	public void close() {
+		m_Done = true;
+		if (m_Reader != null) {
+
+			// Once interrupted, the thread can't put any more batches
+			m_Reader.interrupt();
+			m_Queue.clear();
+			m_Reader = null;
+		}
+	}
+
+	/**
+	 * Writes all remaining batches with the given writer (the writer
+	 * is not closed).
+	 *
+	 * @param writer the writer
+	 * @exception Exception if the rows can't be read or written
+	 */
+	public void writeTo(ReplicaChunkWriter writer) throws Exception {
+		ReplicatedInstances batch;
+		while ((batch = nextBatch()) != null) {
+			writer.writeBatch(batch);
+		}
+	}
+
+	/**
+	 * Reads and replicates the next batch of rows.
+	 *
+	 * @return the replicated batch, or null if there are no more rows
+	 * @exception IOException if the rows can't be read
+	 */
+	private ReplicatedInstances readBatch() throws IOException {
+		Instances rows = new Instances(m_Structure, m_BatchSize);
+		Instance instance;
+		while (rows.numInstances()<m_BatchSize &&
+				(instance = m_Loader.getNextInstance(m_Structure)) != null) {
+			rows.add(instance);
+		}
+		if (rows.numInstances()==0) {
+			return null;
+		}
+		return DataReplicator.replicateData(rows, m_S, null);
+	}
+
+	/**
+	 * Reads all batches into the queue (background thread).
+	 */
+	private void readAhead() {
+		try {
+			while (true) {
+				Batch batch = new Batch();
+				try {
+					batch.data = readBatch();
+				} catch (Exception e) {
+					batch.error = e;
+				}
+				m_Queue.put(batch);
+				if (batch.data == null) {
+					return;
+				}
+			}
+		} catch (InterruptedException e) {} // Stop reading
+	}
+}